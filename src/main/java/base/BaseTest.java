@@ -1,17 +1,20 @@
 package base;
 
 import java.io.File;
-import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.testng.ITestContext;
 import org.testng.ITestResult;
 import org.testng.Reporter;
+import org.testng.SkipException;
 import org.testng.annotations.*;
 
 import com.aventstack.extentreports.ExtentReports;
@@ -21,59 +24,109 @@ import com.aventstack.extentreports.reporter.ExtentSparkReporter;
 import utils.ChatReportUtils;
 import utils.ConfigReader;
 import utils.DriverFactory;
+import utils.FreshResponse;
 import utils.Log;
+import utils.Metrics;
+import utils.ModelWarmUp;
+import utils.ProfileTemplates;
+import utils.ResponseSharing;
+import utils.ScreenshotPipeline;
+import utils.StartupTimings;
+import utils.TimeBudget;
+import utils.WaitAudit;
 
-@Listeners(utils.TestListener.class)
+@Listeners({utils.TestListener.class, utils.SuiteSummaryListener.class})
 public class BaseTest {
 
-    protected WebDriver driver;
     protected static ExtentReports extent;
     protected static final Logger log = LogManager.getLogger(BaseTest.class);
 
+    // Driver of the test method running on this thread (parallel="methods" / "instances" safe)
+    private static final ThreadLocal<WebDriver> driver = new ThreadLocal<>();
+
     // Thread-safe ExtentTest for parallel execution
     protected static ThreadLocal<ExtentTest> extentTest = new ThreadLocal<>();
-    
-    // Parent test for each test class
-    protected ExtentTest parentTest;
+
+    // Driver kept for the retry of a test which failed transiently, per thread (TestNG retries on the same thread)
+    private static final Map<Thread, ParkedDriver> retryDrivers = new ConcurrentHashMap<>();
+
+    private record ParkedDriver(WebDriver driver, String device) {}
+
+    // Parent test per <test> tag and test class, shared by all instances and threads
+    private static final Map<String, ExtentTest> parentTests = new ConcurrentHashMap<>();
 
     @BeforeSuite(alwaysRun = true)
-    public void setupReport() {
+    @Parameters("modelWarmUp")
+    public void setupReport(@Optional("true") String modelWarmUp) {
+        // load the embedding model while browsers start and tests log in
+        if (Boolean.parseBoolean(modelWarmUp)) {
+            ModelWarmUp.start();
+        }
+
+        TimeBudget.startSuite();
+        long start = System.nanoTime();
         ExtentSparkReporter spark = new ExtentSparkReporter("test-output/ExtentReport.html");
         extent = new ExtentReports();
         extent.attachReporter(spark);
+        StartupTimings.record("report setup", start);
     }
-    
+
     @AfterSuite(alwaysRun = true)
     public void tearDownReport() {
-        if (extent != null) {
-            extent.flush();
-        }
-    }
-    
-    @BeforeClass(alwaysRun = true)
-    public void setupClass() {
-        parentTest = extent.createTest(getClass().getSimpleName());
+        ScreenshotPipeline.awaitAll(30);
+        addWaitAudit();
+        flushReport();
+        retryDrivers.values().forEach(parked -> quit(parked.driver()));
+        retryDrivers.clear();
+        ProfileTemplates.cleanUp();
     }
-    
+
     @BeforeMethod(alwaysRun = true)
     @Parameters("device")
-    public void setup(Method method, @Optional("desktop") String device) {
-        // Decide device type
-    	String deviceToUse = device != null ? device.toLowerCase() : "desktop";
-    	try {
-            driver = DriverFactory.createDriver(deviceToUse);
-        } catch (IllegalArgumentException e) {
-            log.warn("Unknown device '" + deviceToUse + "'. Falling back to desktop.");
-            driver = DriverFactory.createDriver("desktop");
+    public void setup(Method method, ITestContext context, @Optional("desktop") String device) {
+        if (TimeBudget.isSuiteExpired()) {
+            throw new SkipException("Suite deadline (suiteDeadlineMinutes) reached, not starting " + method.getName());
         }
+        TimeBudget.startTest(method);
 
-        // Launch app
-        driver.get(ConfigReader.get("url"));
+        // Decide device type
+        String deviceToUse = device != null ? device.toLowerCase() : "desktop";
+        WebDriver webDriver;
+        TimeBudget.Phase phase = TimeBudget.phase("browser");
+        try {
+            webDriver = reuseRetryDriver(deviceToUse);
+            long start = System.nanoTime();
+            if (webDriver == null) {
+                try {
+                    webDriver = createDriver(deviceToUse);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown device '" + deviceToUse + "'. Falling back to desktop.");
+                    webDriver = createDriver("desktop");
+                }
+            }
+            driver.set(webDriver);
+            StartupTimings.record("first browser launch", start);
+            Metrics.observe("uask_browser_launch_seconds", "Browser start time by device", (System.nanoTime() - start) / 1e9, "device", deviceToUse);
+
+            // Launch app
+            start = System.nanoTime();
+            webDriver.get(ConfigReader.get("url"));
+            StartupTimings.record("first app navigation", start);
+            Metrics.observe("uask_app_navigation_seconds", "Time to open the application", (System.nanoTime() - start) / 1e9);
+            ProfileTemplates.recordNavigation(webDriver, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            phase.close();
+        }
 
         // Create ExtentTest for this thread
-        ExtentTest methodTest = parentTest.createNode(method.getName());
+        ExtentTest parentTest = getParentTest(context);
+        ExtentTest methodTest;
+        synchronized (Log.REPORT_LOCK) { // same lock as flush, which walks the node tree
+            methodTest = parentTest.createNode(method.getName());
+        }
         extentTest.set(methodTest);
         Log.setExtentTest(methodTest);
+        ResponseSharing.setFresh(method.isAnnotationPresent(FreshResponse.class));
 
         log.info("Browser launched and navigated to U-Ask application");
         Log.message("Starting test: " + method.getName());
@@ -81,23 +134,43 @@ public class BaseTest {
 
     @AfterMethod(alwaysRun = true)
     public void tearDown(ITestResult result) {
+        WebDriver webDriver = driver.get();
+        String budgetExceeded = TimeBudget.getExceeded(result);
+        String phaseTimes = TimeBudget.endTest();
         try {
             ExtentTest test = extentTest.get();
 
+            // A test which ran out of time is reported as such, apart from wrong answers and plain failures
+            if (budgetExceeded != null && test != null) {
+                synchronized (Log.REPORT_LOCK) {
+                    test.fail("<b>BUDGET EXCEEDED</b>: " + budgetExceeded + (phaseTimes.isEmpty() ? "" : " (time per phase: " + phaseTimes + ")"));
+                }
+            }
+
             // Capture screenshot on failure
-             if (result.getStatus() == ITestResult.FAILURE && driver != null) {
+             if (result.getStatus() == ITestResult.FAILURE && webDriver != null) {
                 takeScreenshot(result.getName());
+            } else if (result.wasRetried()) {
+                if (test != null) {
+                    synchronized (Log.REPORT_LOCK) {
+                        test.warning("Attempt failed transiently and is retried: " + result.getThrowable());
+                    }
+                }
             } else if (result.getStatus() == ITestResult.SKIP) {
                 if (test != null) {
-                    test.skip("Test skipped: " + result.getThrowable());
+                    synchronized (Log.REPORT_LOCK) {
+                        test.skip("Test skipped: " + result.getThrowable());
+                    }
                 }
             }
-        
+
             // Attach AI Test Result HTML table if any
             String htmlTable = ChatReportUtils.getHtmlTable();
             if (htmlTable != null && !htmlTable.isEmpty()) {
                 if (test != null) {
-                    test.info("Test Result Table:<br>" + htmlTable);
+                    synchronized (Log.REPORT_LOCK) {
+                        test.info("Test Result Table:<br>" + htmlTable);
+                    }
                 }
                 Reporter.log("<br><b>Test Result Table:</b><br>" + htmlTable + "<br>", true);
             }
@@ -105,36 +178,171 @@ public class BaseTest {
         } catch (Exception e) {
             log.error("Error in AfterMethod: " + e.getMessage(), e);
         } finally {
-            // Close browser
-            if (driver != null) {
-                driver.quit();
-                log.info("Browser closed for test: " + result.getName());
+            // Keep the warm browser for the retry, else close it
+            if (webDriver != null && result.wasRetried()) {
+                retryDrivers.put(Thread.currentThread(), new ParkedDriver(webDriver, deviceOf(result)));
+                webDriver = null;
+            }
+            if (webDriver != null) {
+                try {
+                    quit(webDriver);
+                    log.info("Browser closed for test: " + result.getName());
+                } catch (Exception e) {
+                    log.error("Error closing browser: " + e.getMessage(), e);
+                }
             }
 
-            // Clear AI test rows for next test
+            if (!phaseTimes.isEmpty()) {
+                log.info("Time per phase for " + result.getName() + ": " + phaseTimes);
+            }
+
+            // Clear AI test rows and thread bindings for the next test on this thread
             ChatReportUtils.resetHtmlTable();
+            driver.remove();
+            extentTest.remove();
+            Log.clearExtentTest();
+            ResponseSharing.setFresh(false);
 
             // Flush ExtentReport after each test
-           if (extent != null) {
+            flushReport();
+        }
+    }
+
+    /**
+     * To take back the browser kept by the failed attempt of this thread, reset to a fresh session
+     *
+     * @param device
+     * @return WebDriver or null if there is none for this device
+     */
+    private WebDriver reuseRetryDriver(String device) {
+        ParkedDriver parked = retryDrivers.remove(Thread.currentThread());
+        if (parked == null) return null;
+        WebDriver webDriver = parked.driver();
+        if (!device.equals(parked.device())) {
+            quit(webDriver);
+            return null;
+        }
+        try {
+            webDriver.manage().deleteAllCookies();
+            webDriver.get(ConfigReader.get("url"));
+            if (webDriver instanceof JavascriptExecutor) {
+                ((JavascriptExecutor) webDriver).executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+            }
+            log.info("Reusing the browser of the failed attempt for the retry");
+            return webDriver;
+        } catch (Exception e) {
+            log.warn("Browser of the failed attempt is not usable, starting a new one: " + e.getMessage());
+            try {
+                quit(webDriver);
+            } catch (Exception ignored) {
+                // already gone
+            }
+            return null;
+        }
+    }
+
+    /**
+     * To quit a browser and delete its warm profile clone
+     *
+     * @param webDriver
+     */
+    private static void quit(WebDriver webDriver) {
+        try {
+            webDriver.quit();
+        } finally {
+            ProfileTemplates.release(webDriver);
+        }
+    }
+
+    private static String deviceOf(ITestResult result) {
+        String device = result.getTestContext().getCurrentXmlTest().getParameter("device");
+        return device != null ? device.toLowerCase() : "desktop";
+    }
+
+    /**
+     * To get the WebDriver of the test running on the current thread
+     *
+     * @return WebDriver or null outside of a test method
+     */
+    public WebDriver getDriver() {
+        return driver.get();
+    }
+
+    /**
+     * To create the WebDriver for a test method, subclasses may override it (e.g. to run without a browser)
+     *
+     * @param device
+     * @return WebDriver instance
+     */
+    protected WebDriver createDriver(String device) {
+        return DriverFactory.createDriver(device);
+    }
+
+    /**
+     * To get (or create once) the parent node for the current &lt;test&gt; tag and class
+     */
+    private ExtentTest getParentTest(ITestContext context) {
+        String testName = context != null ? context.getName() : "";
+        return parentTests.computeIfAbsent(testName + "#" + getClass().getName(), key -> {
+            synchronized (Log.REPORT_LOCK) {
+                return extent.createTest(getClass().getSimpleName() + (testName.isEmpty() ? "" : " [" + testName + "]"));
+            }
+        });
+    }
+
+    /**
+     * To add the top waits of the run to the report as a node of its own
+     */
+    private static void addWaitAudit() {
+        String table = WaitAudit.getHtmlTable();
+        if (table.isEmpty()) return;
+        synchronized (Log.REPORT_LOCK) {
+            if (extent != null) {
+                extent.createTest("Wait audit").info("Top waits by total time (highlighted: timeout oversized)<br>" + table);
+            }
+        }
+    }
+
+    /**
+     * To flush ExtentReport, serialized because reporters are not safe for concurrent flushes
+     */
+    private static void flushReport() {
+        synchronized (Log.REPORT_LOCK) {
+            if (extent != null) {
                 extent.flush();
             }
         }
     }
-    
-    // Screenshot Utility
+
+    // Screenshot Utility: bytes are captured here, compression/writing happens in the background
     public void takeScreenshot(String name) {
         try {
-            TakesScreenshot ts = (TakesScreenshot) driver;
-            File src = ts.getScreenshotAs(OutputType.FILE);
-            File dest = new File("screenshots/" + name + ".png");
-            dest.getParentFile().mkdirs();
-            FileUtils.copyFile(src, dest);
-            log.info("Screenshot taken: " + dest.getAbsolutePath());
+            attachWhenWritten(ScreenshotPipeline.capture(driver.get(), name));
+        } catch (Exception e) {
+            log.error("Error taking screenshot: " + e.getMessage(), e);
+        }
+    }
 
-            ExtentTest test = extentTest.get();
-            if (test != null) test.addScreenCaptureFromPath(dest.getAbsolutePath());
-        } catch (IOException e) {
+    // Element-only screenshot
+    public void takeScreenshot(String name, WebElement element) {
+        try {
+            attachWhenWritten(ScreenshotPipeline.capture(element, name));
+        } catch (Exception e) {
             log.error("Error taking screenshot: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * To attach the screenshot to the current test node once the file exists, tracked so the report is not
+     * flushed before it is attached
+     */
+    private void attachWhenWritten(CompletableFuture<File> screenshot) {
+        ExtentTest test = extentTest.get();
+        if (test == null) return;
+        ScreenshotPipeline.track(screenshot.thenAccept(file -> {
+            synchronized (Log.REPORT_LOCK) {
+                test.addScreenCaptureFromPath(file.getAbsolutePath());
+            }
+        }));
+    }
 }
@@ -2,21 +2,32 @@ package pages;
 import java.time.Duration;
 import java.util.List;
 
-import org.openqa.selenium.By;
 import org.openqa.selenium.*;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
+import utils.AdaptiveWait;
+import utils.ConfigReader;
+import utils.DomProbe;
+import utils.ElementCache;
 import utils.Log;
+import utils.PerformanceCapture;
+import utils.TimeBudget;
+import utils.TokenAccounting;
+import utils.TransientRetryAnalyzer;
 import utils.UAskUtils;
 
 
 public class ChatPage {
 
     WebDriver driver;
+    ElementCache elementCache;
+
+    // Question and send time of the pending message, for token throughput of the answer
+    private String lastInput;
+    private long sentAtNanos;
+    private int answersCaptured;
 
     @FindBy(xpath = "//div[@class='welcome-text']")
     WebElement txtTitle;
@@ -38,8 +49,9 @@ public class ChatPage {
 
     public ChatPage(WebDriver driver) {
         this.driver = driver;
-        PageFactory.initElements(driver, this);
+        elementCache = ElementCache.initElements(driver, this);
         UAskUtils.waitForPageLoad(driver, d -> txtTitle.isDisplayed());
+        PerformanceCapture.capture(driver, "page load");
     }
 
     /**
@@ -61,6 +73,7 @@ public class ChatPage {
         Log.event("Entering '" + input + "' in chat input box");
         UAskUtils.waitForElement(driver, txtChatInput);
         txtChatInput.sendKeys(input);
+        lastInput = input;
         Log.message("Entered '" + input + "' in chat input box");
     }
 
@@ -71,6 +84,8 @@ public class ChatPage {
         Log.event("Clicking 'Send' button");
         UAskUtils.waitForElement(driver, btnSend);
         btnSend.click();
+        sentAtNanos = System.nanoTime();
+        elementCache.invalidate();
         Log.message("Clicked 'Send' button");
 
     }
@@ -83,13 +98,12 @@ public class ChatPage {
      */
     public boolean isInputCleared() {
         Log.event("Verifying chat box is empty or not");
-        try {
-            String value = txtChatInput.getAttribute("value");
-            return txtChatInput.findElement(By.cssSelector(".is-empty.is-editor-empty")).isDisplayed() &&
-                    (value == null || value.trim().isEmpty());
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        DomProbe.Result probe = DomProbe.on(driver)
+                .property("value", DomProbe.element(txtChatInput), "value")
+                .displayed("placeholderDisplayed", DomProbe.element(txtChatInput).css(".is-empty.is-editor-empty"))
+                .run();
+        String value = probe.getString("value");
+        return probe.getBoolean("placeholderDisplayed") && (value == null || value.trim().isEmpty());
     }
 
     /**
@@ -104,27 +118,76 @@ public class ChatPage {
     public String getLastAIMessage(WebDriver driver) {
         Log.event("Getting latest response from AI");
 
+        TimeBudget.Phase phase = TimeBudget.phase("answer");
         try {
-            UAskUtils.waitForElementToDisappear(driver, txtloading, 60);
+            UAskUtils.waitForElementToDisappear(driver, txtloading, 60, false);
 
+            elementCache.invalidate();
             int oldCount = txtAIResponseContentContainer.size();
 
-            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(60));
-            wait.until(d -> {
+            AdaptiveWait.until(driver, "ChatPage.newAIResponse", d -> {
+                elementCache.invalidate();
                 int newCount = txtAIResponseContentContainer.size();
                 return newCount > oldCount;
-            });
+            }, Duration.ofSeconds(60), false);
 
             String lastMessage = txtAIResponseContentContainer.get(txtAIResponseContentContainer.size() - 1).getText().trim();
             Log.message("Latest AI response: " + lastMessage);
+            if (sentAtNanos > 0) {
+                TokenAccounting.record(null, ConfigReader.get("chatModel", "gpt-4.1"), lastInput, lastMessage,
+                        (System.nanoTime() - sentAtNanos) / 1_000_000);
+                sentAtNanos = 0;
+            }
+            PerformanceCapture.capture(driver, "answer " + (++answersCaptured));
             return lastMessage;
 
         } catch (Exception e) {
+            if (e instanceof TimeoutException || e instanceof StaleElementReferenceException) {
+                TransientRetryAnalyzer.markTransient(e.getClass().getSimpleName() + " while waiting for the AI response");
+            }
             Log.message("Failed to fetch AI response: " + e.getMessage());
             return null;
+        } finally {
+            phase.close();
         }
     }
 
+    /**
+     * To get number of AI responses currently rendered in the chat window
+     *
+     * @return
+     * 		- count of AI responses
+     */
+    public int getAIResponseCount() {
+        elementCache.invalidate();
+        return txtAIResponseContentContainer.size();
+    }
+
+    /**
+     * To verify AI is still working on the answer ('Searching the web' indicator displayed)
+     *
+     * @return
+     * 		- true if loading indicator is displayed
+     */
+    public boolean isResponseLoading() {
+        try {
+            return txtloading.isDisplayed();
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            return false;
+        }
+    }
+
+    /**
+     * To get the text of the latest AI response without waiting for it
+     *
+     * @return
+     * 		- Latest AI message text, or null if none rendered yet
+     */
+    public String getLatestAIResponseText() {
+        int count = txtAIResponseContentContainer.size();
+        return count == 0 ? null : txtAIResponseContentContainer.get(count - 1).getText().trim();
+    }
+
     /**
      * To verify multi-language support
      *
@@ -136,13 +199,20 @@ public class ChatPage {
     public boolean isMultilanguageDisplayed(String languageName) {
         Log.event("Verifying multilanguage support");
         boolean langStatus = false;
-        WebElement element = txtResponseContentContainer.get(txtResponseContentContainer.size() - 1).findElement(By.xpath("../../../../..")).findElement(By.xpath("//div[contains(@class,'message') and not(contains(@class,'group'))]"));
+        // last response container -> 5 levels up -> message div, resolved in the browser in one call
+        String direction = DomProbe.on(driver)
+                .style("direction", DomProbe.document()
+                        .cssLast("#response-content-container")
+                        .up(5)
+                        .xpath("//div[contains(@class,'message') and not(contains(@class,'group'))]"), "direction")
+                .run()
+                .getString("direction");
         switch (languageName) {
             case "English":
-                langStatus = element.getCssValue("direction").equals("ltr");
+                langStatus = "ltr".equals(direction);
                 break;
             case "Arabic":
-                langStatus = element.getCssValue("direction").equals("rtl");
+                langStatus = "rtl".equals(direction);
                 break;
             default:
                 break;
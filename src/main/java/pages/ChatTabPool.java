@@ -0,0 +1,211 @@
+package pages;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WindowType;
+import org.openqa.selenium.devtools.DevTools;
+
+import utils.ConfigReader;
+import utils.DriverFactory;
+import utils.Log;
+import utils.TimeBudget;
+import utils.WaitAudit;
+
+/**
+ * Runs several chat conversations in one logged-in browser, one conversation per tab.
+ * <p>
+ * Questions are sent in every tab up front and the tabs are then polled round-robin,
+ * so the LLM works on all of them at the same time. A WebDriver session is not thread-safe,
+ * therefore all tab switching goes through this object (synchronized) and the original
+ * tab is always restored before returning.
+ * </p>
+ */
+public class ChatTabPool {
+
+    private static final int POLLING_INTERVAL = 250; // ms
+
+    private final WebDriver driver;
+    private final String homeHandle;
+    private final List<ChatTab> tabs = new ArrayList<>();
+
+    /**
+     * State of a single tab: its window handle, page object and the question in flight
+     */
+    private static class ChatTab {
+        final String handle;
+        DevTools devTools; // request blocking of the lean profile, null for the first tab
+        ChatPage chatPage;
+        String question;
+        int questionIndex; // position of the question in askAll's list
+        int baselineCount;
+        String lastSeenText;
+        long sentAt;
+        boolean used;
+
+        ChatTab(String handle) {
+            this.handle = handle;
+        }
+
+        boolean isBusy() {
+            return question != null;
+        }
+    }
+
+    /**
+     * To open the given number of chat tabs in an already logged-in browser.
+     * The current tab is reused as the first one.
+     *
+     * @param driver
+     * 		- WebDriver instance, logged in and showing the chat page
+     * @param tabCount
+     * 		- number of conversations to run side by side
+     */
+    public ChatTabPool(WebDriver driver, int tabCount) {
+        this.driver = driver;
+        this.homeHandle = driver.getWindowHandle();
+
+        ChatTab home = new ChatTab(homeHandle);
+        home.chatPage = new ChatPage(driver);
+        tabs.add(home);
+
+        for (int i = 1; i < tabCount; i++) {
+            driver.switchTo().newWindow(WindowType.TAB);
+            ChatTab tab = new ChatTab(driver.getWindowHandle());
+            tab.devTools = DriverFactory.blockRequestsInTab(driver);
+            driver.get(ConfigReader.get("url"));
+            tab.chatPage = new ChatPage(driver);
+            tabs.add(tab);
+        }
+        driver.switchTo().window(homeHandle);
+        Log.event("Opened " + tabs.size() + " chat tabs");
+    }
+
+    /**
+     * To ask all questions, spreading them over the tabs, and harvest the answers as they complete.
+     * Each question gets a fresh conversation so that tabs never share context.
+     *
+     * @param questions
+     * 		- questions to ask
+     * @param timeoutSeconds
+     * 		- maximum time to wait for all answers, capped by the remaining time budget of the test
+     * @return
+     * 		- answers in the order of the questions (duplicates each get their own), null if not answered in time
+     */
+    public synchronized List<String> askAll(List<String> questions, int timeoutSeconds) {
+        List<String> answers = new ArrayList<>(Collections.nCopies(questions.size(), (String) null));
+
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int i = 0; i < questions.size(); i++) {
+            pending.add(i);
+        }
+        long timeout = TimeBudget.cap(timeoutSeconds * 1000L);
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout;
+        int answered = 0;
+
+        try {
+            while ((!pending.isEmpty() || tabs.stream().anyMatch(ChatTab::isBusy)) && System.currentTimeMillis() < deadline) {
+                for (ChatTab tab : tabs) {
+                    if (!tab.isBusy()) {
+                        if (pending.isEmpty()) continue;
+                        int index = pending.poll();
+                        send(tab, index, questions.get(index));
+                        continue;
+                    }
+
+                    String answer = poll(tab);
+                    if (answer != null) {
+                        answers.set(tab.questionIndex, answer);
+                        answered++;
+                        Log.message("Answer " + answered + "/" + questions.size() + " received in "
+                                + (System.currentTimeMillis() - tab.sentAt) + " ms for: " + tab.question);
+                        tab.question = null;
+                    }
+                }
+                sleep();
+            }
+
+            WaitAudit.record("ChatTabPool.askAll", timeoutSeconds * 1000L, timeout, System.currentTimeMillis() - start,
+                    tabs.stream().anyMatch(ChatTab::isBusy) ? "timed out" : "met");
+            if (timeout < timeoutSeconds * 1000L && tabs.stream().anyMatch(ChatTab::isBusy)) {
+                // marks the test as over budget, the unanswered questions are returned as null
+                Log.message(TimeBudget.exceeded().getMessage());
+            }
+            for (ChatTab tab : tabs) {
+                if (tab.isBusy()) {
+                    Log.message("Failed to fetch AI response in time for: " + tab.question);
+                    tab.question = null;
+                }
+            }
+        } finally {
+            driver.switchTo().window(homeHandle);
+        }
+        return answers;
+    }
+
+    /**
+     * To close all extra tabs and switch back to the original one
+     */
+    public synchronized void close() {
+        for (ChatTab tab : tabs) {
+            if (!tab.handle.equals(homeHandle) && driver.getWindowHandles().contains(tab.handle)) {
+                driver.switchTo().window(tab.handle);
+                driver.close();
+            }
+            if (tab.devTools != null) {
+                tab.devTools.close();
+            }
+        }
+        driver.switchTo().window(homeHandle);
+        tabs.clear();
+    }
+
+    private void send(ChatTab tab, int index, String question) {
+        driver.switchTo().window(tab.handle);
+        if (tab.used) {
+            // a tab which already answered is reloaded to start a new conversation
+            driver.get(ConfigReader.get("url"));
+            tab.chatPage = new ChatPage(driver);
+        }
+        tab.baselineCount = tab.chatPage.getAIResponseCount();
+        tab.lastSeenText = null;
+        tab.question = question;
+        tab.questionIndex = index;
+        tab.used = true;
+        tab.sentAt = System.currentTimeMillis();
+        tab.chatPage.enterChatInput(question);
+        tab.chatPage.clickOnButtonSend();
+    }
+
+    /**
+     * To check whether the tab has a complete answer. An answer is complete once a new response
+     * is rendered, the loading indicator is gone and the text did not change since the last poll.
+     *
+     * @return answer text or null if still in progress
+     */
+    private String poll(ChatTab tab) {
+        driver.switchTo().window(tab.handle);
+        if (tab.chatPage.isResponseLoading() || tab.chatPage.getAIResponseCount() <= tab.baselineCount) {
+            return null;
+        }
+        String text = tab.chatPage.getLatestAIResponseText();
+        if (text == null || text.isEmpty() || !text.equals(tab.lastSeenText)) {
+            tab.lastSeenText = text;
+            return null;
+        }
+        return text;
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(POLLING_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,10 +3,11 @@ package pages;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 
+import utils.ElementCache;
 import utils.Log;
+import utils.TimeBudget;
 import utils.UAskUtils;
 
 
@@ -32,7 +33,7 @@ public class LoginPage {
 
     public LoginPage(WebDriver driver) {
         this.driver = driver;
-        PageFactory.initElements(driver, this);
+        ElementCache.initElements(driver, this);
         UAskUtils.waitForPageLoad(driver, d -> lnkLoginUsingEmail.isDisplayed());
     }
 
@@ -56,9 +57,14 @@ public class LoginPage {
      */
     public void loginToUAskWebApp(String email, String password) {
         Log.event("Login to the U-Ask");
-        txtEmail.sendKeys(email);
-        txtPassWord.sendKeys(password);
-        btnLogIn.click();
+        TimeBudget.Phase phase = TimeBudget.phase("login");
+        try {
+            txtEmail.sendKeys(email);
+            txtPassWord.sendKeys(password);
+            btnLogIn.click();
+        } finally {
+            phase.close();
+        }
         Log.message("Logged into U-Ask as (" + email + "/" + password + ")");
     }
 }
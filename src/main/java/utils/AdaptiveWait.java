@@ -0,0 +1,248 @@
+package utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Wait engine with adaptive polling and learned timeouts.
+ * <p>
+ * Polling starts tight (waitInitialPollingMs) and backs off exponentially (waitBackoffFactor) up to
+ * waitMaxPollingMs, so fast elements are picked up almost immediately while slow ones do not burn
+ * WebDriver calls. Appear-times of successful waits are kept per key (locator or caller) and persisted
+ * between runs; once enough samples exist the timeout of a key is cut down to
+ * waitTimeoutMultiplier x its p99 appear-time (never below waitMinTimeoutSeconds, never above the
+ * timeout asked for by the caller). A wait that times out is kept as a censored sample (the element took at
+ * least that long), which raises the learned timeout of the key again. Waits on the backend, like the LLM
+ * answer, vary with load and are not learned: they always use the timeout asked for.
+ * </p>
+ */
+public class AdaptiveWait {
+
+	private static final Logger log = LogManager.getLogger(AdaptiveWait.class);
+
+	private static final String HISTORY_FILE = "test-output/wait-history.json";
+	private static final int MAX_SAMPLES = 50;
+	private static final int MIN_SAMPLES = 5;
+
+	private static final long INITIAL_POLLING = ConfigReader.getInt("waitInitialPollingMs", 50);
+	private static final long MAX_POLLING = ConfigReader.getInt("waitMaxPollingMs", 1000);
+	private static final double BACKOFF_FACTOR = ConfigReader.getDouble("waitBackoffFactor", 1.5);
+	private static final boolean ADAPTIVE_TIMEOUTS = ConfigReader.getBoolean("adaptiveTimeouts", true);
+	private static final double TIMEOUT_MULTIPLIER = ConfigReader.getDouble("waitTimeoutMultiplier", 3.0);
+	private static final long MIN_TIMEOUT = ConfigReader.getInt("waitMinTimeoutSeconds", 5) * 1000L;
+
+	private static final Map<String, List<Long>> history = loadHistory();
+
+	// Time the current test thread spent in explicit waits
+	private static final ThreadLocal<long[]> waitedMillis = ThreadLocal.withInitial(() -> new long[1]);
+
+	/**
+	 * To wait until the condition returns a non-null value other than Boolean.FALSE
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @param key
+	 * 		- locator or caller identifying this wait, used for the learned timeout
+	 * @param condition
+	 * 		- condition to evaluate, NoSuchElement/StaleElement exceptions are ignored
+	 * @param timeout
+	 * 		- maximum time to wait for
+	 * @return value returned by the condition
+	 * @throws TimeoutException
+	 * 		- if the condition is not met within the (learned) timeout
+	 * @throws TimeBudget.BudgetExceededException
+	 * 		- if the time budget of the test ran out first
+	 */
+	public static <T> T until(WebDriver driver, String key, Function<? super WebDriver, T> condition, Duration timeout) {
+		return until(driver, key, condition, timeout, true);
+	}
+
+	/**
+	 * To wait until the condition returns a non-null value other than Boolean.FALSE
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @param key
+	 * 		- locator or caller identifying this wait
+	 * @param condition
+	 * 		- condition to evaluate, NoSuchElement/StaleElement exceptions are ignored
+	 * @param timeout
+	 * 		- maximum time to wait for
+	 * @param learnTimeout
+	 * 		- false to always wait the full timeout and keep no samples (LLM answers, spinners)
+	 * @return value returned by the condition
+	 */
+	public static <T> T until(WebDriver driver, String key, Function<? super WebDriver, T> condition, Duration timeout,
+			boolean learnTimeout) {
+		long requestedTimeout = timeout.toMillis();
+		long learnedTimeout = learnTimeout ? getTimeout(key, requestedTimeout) : requestedTimeout;
+		long effectiveTimeout = TimeBudget.cap(learnedTimeout);
+		long start = System.nanoTime();
+		long polling = INITIAL_POLLING;
+		RuntimeException lastException = null;
+
+		while (true) {
+			try {
+				T value = condition.apply(driver);
+				if (value != null && !Boolean.FALSE.equals(value)) {
+					long elapsed = elapsedMillis(start);
+					if (learnTimeout) recordSample(key, elapsed);
+					report(key, elapsed, requestedTimeout, effectiveTimeout, "met");
+					return value;
+				}
+			} catch (NoSuchElementException | StaleElementReferenceException e) {
+				lastException = e;
+			} catch (RuntimeException e) {
+				report(key, elapsedMillis(start), requestedTimeout, effectiveTimeout, "error");
+				throw e;
+			}
+
+			long elapsed = elapsedMillis(start);
+			long remaining = effectiveTimeout - elapsed;
+			if (remaining <= 0) {
+				if (effectiveTimeout < learnedTimeout) {
+					report(key, elapsed, requestedTimeout, effectiveTimeout, "budget exceeded");
+					throw TimeBudget.exceeded();
+				}
+				if (learnTimeout) recordSample(key, elapsed); // censored: the element needs at least this long
+				report(key, elapsed, requestedTimeout, effectiveTimeout, "timed out");
+				throw new TimeoutException("Timed out after " + elapsed + " ms waiting for " + key, lastException);
+			}
+			sleep(Math.min(polling, remaining));
+			polling = Math.min(MAX_POLLING, (long) (polling * BACKOFF_FACTOR));
+		}
+	}
+
+	/**
+	 * To get the timeout to use for the key: learned from history, capped by the requested timeout
+	 *
+	 * @param key
+	 * @param requestedMillis
+	 * @return timeout in milliseconds
+	 */
+	public static long getTimeout(String key, long requestedMillis) {
+		if (!ADAPTIVE_TIMEOUTS) return requestedMillis;
+
+		List<Long> samples = history.get(key);
+		if (samples == null) return requestedMillis;
+
+		List<Long> sorted;
+		synchronized (samples) {
+			if (samples.size() < MIN_SAMPLES) return requestedMillis;
+			sorted = new ArrayList<>(samples);
+		}
+		Collections.sort(sorted);
+		long learned = Math.max(MIN_TIMEOUT, (long) (ShardReport.percentile(sorted, 99) * TIMEOUT_MULTIPLIER));
+		return Math.min(requestedMillis, learned);
+	}
+
+	/**
+	 * To get the time the current thread spent in explicit waits since the last reset
+	 *
+	 * @return milliseconds
+	 */
+	public static long getWaitedMillis() {
+		return waitedMillis.get()[0];
+	}
+
+	/**
+	 * To reset the wait time of the current thread (at the end of a test)
+	 */
+	public static void resetWaitedMillis() {
+		waitedMillis.remove();
+	}
+
+	/**
+	 * To persist observed appear-times so the next run starts with learned timeouts
+	 */
+	public static void saveHistory() {
+		File file = new File(HISTORY_FILE);
+		file.getParentFile().mkdirs();
+		try (Writer writer = new FileWriter(file)) {
+			Map<String, List<Long>> snapshot = new ConcurrentHashMap<>();
+			history.forEach((key, samples) -> {
+				synchronized (samples) {
+					snapshot.put(key, new ArrayList<>(samples));
+				}
+			});
+			new Gson().toJson(snapshot, writer);
+		} catch (IOException e) {
+			log.warn("Failed to save wait history: " + e.getMessage());
+		}
+	}
+
+	private static void recordSample(String key, long elapsed) {
+		List<Long> samples = history.computeIfAbsent(key, k -> new ArrayList<>());
+		synchronized (samples) {
+			samples.add(elapsed);
+			if (samples.size() > MAX_SAMPLES) {
+				samples.remove(0);
+			}
+		}
+	}
+
+	private static void report(String key, long elapsed, long requestedTimeout, long timeout, String outcome) {
+		waitedMillis.get()[0] += elapsed;
+		WaitAudit.record(key, requestedTimeout, timeout, elapsed, outcome);
+		Metrics.observe("uask_wait_seconds", "Explicit waits by key and outcome", elapsed / 1000.0, "key", key, "outcome", outcome);
+		String message = "Wait " + outcome + " after " + elapsed + " ms (timeout " + timeout + " ms): " + key;
+		// Only waits which ran out go to the report, the rest would bury the test steps
+		if (outcome.equals("timed out") || outcome.equals("budget exceeded")) {
+			Log.event(message);
+		} else {
+			log.debug(message);
+		}
+	}
+
+	private static Map<String, List<Long>> loadHistory() {
+		Map<String, List<Long>> loaded = new ConcurrentHashMap<>();
+		File file = new File(HISTORY_FILE);
+		if (file.exists()) {
+			try (Reader reader = new FileReader(file)) {
+				Type type = new TypeToken<Map<String, List<Long>>>() {}.getType();
+				Map<String, List<Long>> saved = new Gson().fromJson(reader, type);
+				if (saved != null) {
+					saved.forEach((key, samples) -> loaded.put(key, new ArrayList<>(samples)));
+				}
+			} catch (Exception e) {
+				log.warn("Ignoring unreadable wait history: " + e.getMessage());
+			}
+		}
+		return loaded;
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1_000_000;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while waiting", e);
+		}
+	}
+}
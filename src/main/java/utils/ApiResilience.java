@@ -0,0 +1,281 @@
+package utils;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Resilience layer for calls to the chat backend: retries with jittered exponential backoff, Retry-After,
+ * a circuit breaker per endpoint and a global concurrency limit which adapts to throttling (AIMD).
+ * <p>
+ * A call is retried (up to apiMaxRetries) on 429, 5xx and I/O errors. The wait is a random value up to
+ * apiBackoffBaseMs x 2^attempt (capped by apiBackoffMaxMs), or the server's Retry-After when longer.
+ * After apiBreakerFailures consecutive failures an endpoint is short-circuited for apiBreakerOpenSeconds,
+ * then a single trial call decides whether it closes again. At most "limit" calls run at once: the limit
+ * grows by 1/limit per successful call and halves on every 429, between 1 and apiConcurrencyMax.
+ * </p>
+ */
+public class ApiResilience {
+
+	private static final Logger log = LogManager.getLogger(ApiResilience.class);
+
+	private static final int MAX_RETRIES = ConfigReader.getInt("apiMaxRetries", 4);
+	private static final long BACKOFF_BASE = ConfigReader.getInt("apiBackoffBaseMs", 500);
+	private static final long BACKOFF_MAX = ConfigReader.getInt("apiBackoffMaxMs", 20000);
+	private static final long RETRY_AFTER_MAX = ConfigReader.getInt("apiRetryAfterMaxSeconds", 60) * 1000L;
+	private static final int BREAKER_FAILURES = ConfigReader.getInt("apiBreakerFailures", 5);
+	private static final long BREAKER_OPEN = ConfigReader.getInt("apiBreakerOpenSeconds", 30) * 1000L;
+	private static final double CONCURRENCY_MAX = ConfigReader.getInt("apiConcurrencyMax", 16);
+
+	private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+	private static final Limiter limiter = new Limiter(ConfigReader.getInt("apiConcurrencyInitial", 4));
+
+	/**
+	 * Thrown without calling the server while the circuit breaker of the endpoint is open
+	 */
+	public static class CircuitOpenException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String endpoint, long retryInMillis) {
+			super("Circuit breaker open for " + endpoint + ", next trial in " + retryInMillis + " ms");
+		}
+	}
+
+	/**
+	 * To run an HTTP call with retries, circuit breaker and concurrency limit
+	 *
+	 * @param endpoint
+	 * 		- templated endpoint path (ids replaced, e.g. /chat/{id}), the unit of the circuit breaker and of the metrics
+	 * @param call
+	 * 		- performs one attempt and returns the response
+	 * @param statusOf
+	 * 		- HTTP status of a response
+	 * @param retryAfterOf
+	 * 		- Retry-After header of a response, null if absent
+	 * @return response of the last attempt (may still be an error status once retries are exhausted)
+	 * @throws CircuitOpenException
+	 * 		- if the endpoint is short-circuited
+	 * @throws TimeBudget.BudgetExceededException
+	 * 		- if the time budget of the test is used up before an attempt or would be by the backoff
+	 */
+	public static <T> T execute(String endpoint, Supplier<T> call, Function<T, Integer> statusOf,
+			Function<T, String> retryAfterOf) {
+		Endpoint state = endpoints.computeIfAbsent(endpoint, Endpoint::new);
+
+		for (int attempt = 0; ; attempt++) {
+			TimeBudget.check();
+			state.checkBreaker();
+			state.calls.incrementAndGet();
+
+			T response = null;
+			RuntimeException error = null;
+			limiter.acquire();
+			try {
+				response = call.get();
+			} catch (RuntimeException e) {
+				if (!isIoError(e)) {
+					state.abortTrial();
+					throw e;
+				}
+				error = e;
+			} finally {
+				limiter.release();
+			}
+
+			int status = response != null ? statusOf.apply(response) : -1;
+			if (status == 429) {
+				state.throttled.incrementAndGet();
+				limiter.onThrottled();
+			} else if (response != null) {
+				limiter.onSuccess();
+			}
+
+			boolean retryable = error != null || status == 429 || status >= 500;
+			if (!retryable) {
+				state.onSuccess();
+				return response;
+			}
+			state.onFailure();
+			if (status >= 500) state.serverErrors.incrementAndGet();
+			if (error != null) state.ioErrors.incrementAndGet();
+
+			if (attempt >= MAX_RETRIES) {
+				if (error != null) throw error;
+				return response;
+			}
+
+			long wait = backoff(attempt, response != null ? retryAfterOf.apply(response) : null);
+			if (wait >= TimeBudget.remainingMillis()) {
+				throw TimeBudget.exceeded();
+			}
+			state.retries.incrementAndGet();
+			Log.event("Retry " + (attempt + 1) + "/" + MAX_RETRIES + " of " + endpoint + " after "
+					+ (error != null ? error.getClass().getSimpleName() : "HTTP " + status) + ", waiting " + wait + " ms");
+			sleep(wait);
+		}
+	}
+
+	/**
+	 * To get calls, retries, throttling, errors and breaker trips per endpoint and the current concurrency limit
+	 *
+	 * @return String, one endpoint per line
+	 */
+	public static String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		new TreeMap<>(endpoints).forEach((name, state) -> sb.append(String.format(
+				"%n  %-28s calls=%d retries=%d 429=%d 5xx=%d io=%d breakerTrips=%d",
+				name, state.calls.get(), state.retries.get(), state.throttled.get(), state.serverErrors.get(),
+				state.ioErrors.get(), state.trips.get())));
+		sb.append(String.format("%n  concurrency limit=%.1f", limiter.getLimit()));
+		return sb.toString();
+	}
+
+	/**
+	 * Full-jitter exponential backoff, or the Retry-After of the server when it asks for longer
+	 */
+	static long backoff(int attempt, String retryAfter) {
+		long cap = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt, 20));
+		long wait = ThreadLocalRandom.current().nextLong(cap + 1);
+		return Math.max(wait, parseRetryAfter(retryAfter));
+	}
+
+	/**
+	 * Retry-After as delay-seconds or HTTP-date, in ms (0 when absent or unreadable, capped by apiRetryAfterMaxSeconds)
+	 */
+	static long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null || retryAfter.trim().isEmpty()) return 0;
+		long millis;
+		try {
+			millis = Long.parseLong(retryAfter.trim()) * 1000;
+		} catch (NumberFormatException e) {
+			try {
+				millis = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+						- System.currentTimeMillis();
+			} catch (RuntimeException ignored) {
+				return 0;
+			}
+		}
+		return Math.max(0, Math.min(RETRY_AFTER_MAX, millis));
+	}
+
+	private static boolean isIoError(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof IOException) return true;
+		}
+		return false;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while backing off", e);
+		}
+	}
+
+	/**
+	 * Circuit breaker and counters of one endpoint
+	 */
+	private static class Endpoint {
+		private final String name;
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong retries = new AtomicLong();
+		private final AtomicLong throttled = new AtomicLong();
+		private final AtomicLong serverErrors = new AtomicLong();
+		private final AtomicLong ioErrors = new AtomicLong();
+		private final AtomicLong trips = new AtomicLong();
+
+		private int consecutiveFailures;
+		private long openUntil;
+		private boolean trialRunning;
+
+		Endpoint(String name) {
+			this.name = name;
+		}
+
+		synchronized void checkBreaker() {
+			if (openUntil == 0) return;
+			long now = System.currentTimeMillis();
+			if (now < openUntil || trialRunning) {
+				throw new CircuitOpenException(name, Math.max(0, openUntil - now));
+			}
+			trialRunning = true; // half-open: let this one call through
+		}
+
+		synchronized void abortTrial() {
+			trialRunning = false;
+		}
+
+		synchronized void onSuccess() {
+			if (openUntil != 0) {
+				log.info("Circuit breaker closed for " + name);
+			}
+			consecutiveFailures = 0;
+			openUntil = 0;
+			trialRunning = false;
+		}
+
+		synchronized void onFailure() {
+			consecutiveFailures++;
+			if (trialRunning || (openUntil == 0 && consecutiveFailures >= BREAKER_FAILURES)) {
+				openUntil = System.currentTimeMillis() + BREAKER_OPEN;
+				trialRunning = false;
+				trips.incrementAndGet();
+				Log.event("Circuit breaker opened for " + name + " after " + consecutiveFailures + " consecutive failures");
+			}
+		}
+	}
+
+	/**
+	 * Global concurrency limit with additive increase / multiplicative decrease
+	 */
+	private static class Limiter {
+		private double limit;
+		private int inFlight;
+
+		Limiter(double initial) {
+			this.limit = Math.max(1, Math.min(CONCURRENCY_MAX, initial));
+		}
+
+		synchronized void acquire() {
+			while (inFlight >= (int) limit) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for an API slot", e);
+				}
+			}
+			inFlight++;
+		}
+
+		synchronized void release() {
+			inFlight--;
+			notifyAll();
+		}
+
+		synchronized void onSuccess() {
+			limit = Math.min(CONCURRENCY_MAX, limit + 1 / limit);
+			notifyAll();
+		}
+
+		synchronized void onThrottled() {
+			limit = Math.max(1, limit / 2);
+		}
+
+		synchronized double getLimit() {
+			return limit;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Time budget of a test method (browser start, login, answers and scoring included), overriding
+ * testBudgetSeconds; see TimeBudget
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Budget {
+
+	/** seconds the test may take */
+	int seconds();
+}
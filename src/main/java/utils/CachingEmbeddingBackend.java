@@ -0,0 +1,100 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.djl.translate.TranslateException;
+
+/**
+ * Embedding backend wrapper which answers repeated texts (expected answers, fallbacks, warm-up) from an
+ * LRU cache shared by all models, bounded by embeddingCacheSize entries. Only the misses of a batch are
+ * sent to the wrapped backend.
+ */
+public class CachingEmbeddingBackend implements EmbeddingBackend {
+
+	private static final int MAX_ENTRIES = ConfigReader.getInt("embeddingCacheSize", 2000);
+
+	// "<backend>\0<text>" -> embedding, least recently used first
+	private static final Map<String, float[]> cache = new LinkedHashMap<String, float[]>(256, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private static long hits;
+	private static long misses;
+
+	private final EmbeddingBackend backend;
+
+	public CachingEmbeddingBackend(EmbeddingBackend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * To get the cache hit/miss counts, e.g. "hits=12, misses=30"
+	 *
+	 * @return String
+	 */
+	public static synchronized String getStatistics() {
+		return "hits=" + hits + ", misses=" + misses + ", entries=" + cache.size();
+	}
+
+	@Override
+	public String getName() {
+		return backend.getName();
+	}
+
+	@Override
+	public float[] embed(String text) throws TranslateException {
+		return embedBatch(Collections.singletonList(text)).get(0);
+	}
+
+	@Override
+	public List<float[]> embedBatch(List<String> texts) throws TranslateException {
+		float[][] embeddings = new float[texts.size()][];
+		List<String> missing = new ArrayList<>();
+		List<Integer> missingIndexes = new ArrayList<>();
+
+		synchronized (CachingEmbeddingBackend.class) {
+			for (int i = 0; i < texts.size(); i++) {
+				embeddings[i] = cache.get(key(texts.get(i)));
+				if (embeddings[i] != null) {
+					hits++;
+				} else {
+					misses++;
+					missing.add(texts.get(i));
+					missingIndexes.add(i);
+				}
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			List<float[]> computed = backend.embedBatch(missing);
+			synchronized (CachingEmbeddingBackend.class) {
+				for (int i = 0; i < computed.size(); i++) {
+					embeddings[missingIndexes.get(i)] = computed.get(i);
+					cache.put(key(missing.get(i)), computed.get(i));
+				}
+			}
+		}
+
+		List<float[]> result = new ArrayList<>(embeddings.length);
+		for (float[] embedding : embeddings) {
+			result.add(embedding);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() {
+		backend.close();
+	}
+
+	private String key(String text) {
+		return backend.getName() + '\0' + text;
+	}
+}
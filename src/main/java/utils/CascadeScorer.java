@@ -0,0 +1,182 @@
+package utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tiered answer scoring: cheap lexical scores first, the embedding model only when they are inconclusive.
+ * <p>
+ * Tier 1 is the keyword match of {@link TextUtils#isResponseValid(String, String)}, optionally averaged
+ * with a BM25 score (cascadeBm25=true). A lexical score at or above both cascadeKeywordPass and the question
+ * threshold is a clear pass, below cascadeKeywordFail a clear fail; anything else is escalated
+ * to {@link TextUtils#getSemanticSimilarity(String, String)} against the question threshold.
+ * cascadeEnabled=false always uses the embedding model (the previous behaviour).
+ * </p>
+ */
+public class CascadeScorer {
+
+	public static final String TIER_KEYWORD = "keyword";
+	public static final String TIER_BM25 = "keyword+bm25";
+	public static final String TIER_EMBEDDING = "embedding";
+
+	private static final boolean ENABLED = ConfigReader.getBoolean("cascadeEnabled", true);
+	private static final boolean USE_BM25 = ConfigReader.getBoolean("cascadeBm25", false);
+	private static final double PASS_BOUND = ConfigReader.getDouble("cascadeKeywordPass", 0.85);
+	private static final double FAIL_BOUND = ConfigReader.getDouble("cascadeKeywordFail", 0.05);
+
+	// BM25 term-frequency saturation and length normalization
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	private static final Map<String, AtomicLong> decisions = new ConcurrentHashMap<>();
+
+	/**
+	 * Result of the cascade: score of the deciding tier, verdict and the tier which decided
+	 */
+	public static class Score {
+		private final double value;
+		private final boolean pass;
+		private final String tier;
+
+		Score(double value, boolean pass, String tier) {
+			this.value = value;
+			this.pass = pass;
+			this.tier = tier;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		public boolean isPass() {
+			return pass;
+		}
+
+		public String getTier() {
+			return tier;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.2f (%s, %s)", value, pass ? "pass" : "fail", tier);
+		}
+	}
+
+	/**
+	 * To score the actual answer against the expected one, escalating to the embedding model only when needed
+	 *
+	 * @param expected
+	 * 		- Expected answer from JSON
+	 * @param actual
+	 * 		- AI generated response
+	 * @param threshold
+	 * 		- semantic similarity threshold of the question (0.0 - 1.0)
+	 * @return Score
+	 * @throws Exception
+	 * 		- if the embedding model has to be used and fails
+	 */
+	public static Score score(String expected, String actual, double threshold) throws Exception {
+		return score(expected, actual, threshold, null);
+	}
+
+	/**
+	 * To score the actual answer against the expected one, with the embedding model of the language
+	 *
+	 * @param expected
+	 * 		- Expected answer from JSON
+	 * @param actual
+	 * 		- AI generated response
+	 * @param threshold
+	 * 		- semantic similarity threshold of the question (0.0 - 1.0)
+	 * @param lang
+	 * 		- language of the question (TestData.lang), null for the default model
+	 * @return Score
+	 * @throws Exception
+	 * 		- if the embedding model has to be used and fails
+	 */
+	public static Score score(String expected, String actual, double threshold, String lang) throws Exception {
+		if (ENABLED) {
+			double lexical = TextUtils.isResponseValid(expected, actual);
+			String tier = TIER_KEYWORD;
+			if (USE_BM25) {
+				lexical = (lexical + bm25(expected, actual)) / 2;
+				tier = TIER_BM25;
+			}
+
+			// a keyword pass must also meet the question threshold, a stricter question goes to the next tier
+			if (lexical >= PASS_BOUND && lexical >= threshold) {
+				return decided(new Score(lexical, true, tier), actual);
+			}
+			if (lexical < FAIL_BOUND) {
+				return decided(new Score(lexical, false, tier), actual);
+			}
+		}
+
+		double similarity = TextUtils.getSemanticSimilarity(expected, actual, lang);
+		return decided(new Score(similarity, similarity >= threshold, TIER_EMBEDDING), actual);
+	}
+
+	/**
+	 * To get how many verdicts each tier decided so far, e.g. "keyword=7, embedding=3 (70% without model)"
+	 *
+	 * @return String
+	 */
+	public static String getSummary() {
+		long total = 0, embedding = 0;
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(decisions).entrySet()) {
+			long count = entry.getValue().get();
+			total += count;
+			if (TIER_EMBEDDING.equals(entry.getKey())) embedding = count;
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(entry.getKey()).append('=').append(count);
+		}
+		if (total == 0) return "no answers scored";
+		return sb + String.format(" (%.0f%% without model)", 100.0 * (total - embedding) / total);
+	}
+
+	/**
+	 * BM25 of the expected answer (as query) over the actual answer, normalized by the score the
+	 * expected answer gets against itself. With a single document there is no useful IDF, so every
+	 * term weighs 1 and BM25 reduces to saturated, length-normalized term frequency.
+	 */
+	private static double bm25(String expected, String actual) {
+		if (expected == null || actual == null || expected.isEmpty() || actual.isEmpty()) {
+			return 0;
+		}
+		String[] query = TextUtils.normalizeText(expected).split("\\s+");
+		String[] document = TextUtils.normalizeText(actual).split("\\s+");
+		double best = bm25(query, query, query.length);
+		return best > 0 ? Math.min(1.0, bm25(query, document, query.length) / best) : 0;
+	}
+
+	private static double bm25(String[] query, String[] document, int averageLength) {
+		Map<String, Integer> frequencies = new HashMap<>();
+		for (String term : document) {
+			frequencies.merge(term, 1, Integer::sum);
+		}
+		double score = 0;
+		for (String term : query) {
+			int tf = frequencies.getOrDefault(term, 0);
+			score += tf * (K1 + 1) / (tf + K1 * (1 - B + B * document.length / (double) averageLength));
+		}
+		return score;
+	}
+
+	private static Score decided(Score score, String actual) {
+		decisions.computeIfAbsent(score.getTier(), k -> new AtomicLong()).incrementAndGet();
+		if (!score.isPass() && actual != null && !actual.trim().isEmpty()) {
+			// a wrong answer is deterministic, a missing one may be a timeout
+			TransientRetryAnalyzer.markContentFailure();
+		}
+		Metrics.increment("uask_answers", "Scored answers by deciding tier and verdict", "tier", score.getTier(),
+				"result", score.isPass() ? "pass" : "fail");
+		Metrics.observe("uask_answer_score", "Answer scores by deciding tier", Metrics.SCORE_BUCKETS, score.getValue(),
+				"tier", score.getTier());
+		Log.message("Answer score " + score);
+		return score;
+	}
+}
@@ -9,29 +9,64 @@ import java.util.List;
 
 public class ChatReportUtils {
 
-    private static final List<String[]> currentTestRows = new ArrayList<>();
+    // Rows of the test running on the current thread
+    private static final ThreadLocal<List<String[]>> currentTestRows = ThreadLocal.withInitial(ArrayList::new);
 
     /**
      * Log a result for AI test (question, expected, actual, similarity, pass/fail)
      */
     public static void logResultHtml(String question, String expected, String actual, Double similarity, boolean isPass) {
+        logResultHtml(question, expected, actual, similarity, isPass, "");
+    }
+
+    /**
+     * Log a result for AI test, including the scoring tier which decided it (keyword, embedding, ...)
+     */
+    public static void logResultHtml(String question, String expected, String actual, Double similarity, boolean isPass,
+            String decidedBy) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         String status = isPass ? "PASS" : "FAIL";
 
-        // Null safety + escape HTML
-        question = question != null ? escapeHtml(question) : "";
-        expected = expected != null ? escapeHtml(expected) : "";
-        actual = actual != null ? escapeHtml(actual) : "";
+        // Null safety, HTML is escaped when the table is rendered
+        question = question != null ? question : "";
+        expected = expected != null ? expected : "";
+        actual = actual != null ? actual : "";
         String similarityStr = similarity != null ? String.format("%.2f", similarity) : "";
+        decidedBy = decidedBy != null ? decidedBy : "";
 
-        currentTestRows.add(new String[]{timestamp, question, expected, actual, similarityStr, status});
+        currentTestRows.get().add(new String[]{timestamp, question, expected, actual, similarityStr, status, decidedBy});
     }
 
     /**
      * Returns HTML table for ExtentReports / TestNG
      */
     public static String getHtmlTable() {
-        if (currentTestRows.isEmpty()) return "";
+        String table = buildHtmlTable(currentTestRows.get());
+        if (table.isEmpty()) return "";
+
+        // Log for TestNG emailable report
+        Reporter.log("<br><b>Test Result Table:</b><br>" + table + "<br>", true);
+
+        return table;
+    }
+
+    /**
+     * Returns a copy of the rows logged by the current test
+     * (timestamp, question, expected, actual, similarity, status, decided by)
+     */
+    public static List<String[]> getRows() {
+        List<String[]> rows = new ArrayList<>();
+        for (String[] row : currentTestRows.get()) {
+            rows.add(row.clone());
+        }
+        return rows;
+    }
+
+    /**
+     * Returns HTML table for the given rows (timestamp, question, expected, actual, similarity, status, decided by)
+     */
+    public static String buildHtmlTable(List<String[]> rows) {
+        if (rows == null || rows.isEmpty()) return "";
 
         StringBuilder sb = new StringBuilder();
         sb.append("<table border='1' cellspacing='0' cellpadding='5' style='width:100%; border-collapse:collapse; font-size:12px;'>");
@@ -44,25 +79,22 @@ public class ChatReportUtils {
           .append("<th>Actual</th>")
           .append("<th>Similarity</th>")
           .append("<th>Status</th>")
+          .append("<th>Decided by</th>")
           .append("</tr>");
 
         // Data rows
-        for (String[] row : currentTestRows) {
+        for (String[] row : rows) {
             String color = "PASS".equalsIgnoreCase(row[5]) ? "#d4edda" : "#f8d7da"; // green/red
             sb.append("<tr style='background-color:").append(color).append(";'>");
 
             for (String col : row) {
-                col = col != null ? col.replace("\n", "<br>") : "";
+                col = col != null ? escapeHtml(col).replace("\n", "<br>") : "";
                 sb.append("<td style='border:1px solid #ccc; padding:5px; vertical-align:top;'>").append(col).append("</td>");
             }
             sb.append("</tr>");
         }
 
         sb.append("</table>");
-
-        // Log for TestNG emailable report
-        Reporter.log("<br><b>Test Result Table:</b><br>" + sb.toString() + "<br>", true);
-
         return sb.toString();
     }
 
@@ -70,7 +102,7 @@ public class ChatReportUtils {
      * Clear the table for the next test
      */
     public static void resetHtmlTable() {
-        currentTestRows.clear();
+        currentTestRows.remove();
     }
 
     /**
@@ -2,6 +2,8 @@ package utils;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class ConfigReader {
@@ -17,8 +19,90 @@ public class ConfigReader {
 	        }
 	    }
 
+	    /**
+	     * To get the config value, a JVM system property (-Dkey=value) wins over config.properties
+	     *
+	     * @param key
+	     * @return String or null if not configured
+	     */
 	    public static String get(String key) {
-	        return properties.getProperty(key);
+	        String value = System.getProperty(key, properties.getProperty(key));
+	        return value != null ? value.trim() : null;
+	    }
+
+	    /**
+	     * To get the config value or the given default when it is missing/blank
+	     *
+	     * @param key
+	     * @param defaultValue
+	     * @return String
+	     */
+	    public static String get(String key, String defaultValue) {
+	        String value = get(key);
+	        return value == null || value.isEmpty() ? defaultValue : value;
+	    }
+
+	    /**
+	     * To get a boolean config value
+	     *
+	     * @param key
+	     * @param defaultValue
+	     * @return boolean
+	     */
+	    public static boolean getBoolean(String key, boolean defaultValue) {
+	        String value = get(key);
+	        return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+	    }
+
+	    /**
+	     * To get an integer config value
+	     *
+	     * @param key
+	     * @param defaultValue
+	     * @return int
+	     */
+	    public static int getInt(String key, int defaultValue) {
+	        String value = get(key);
+	        try {
+	            return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+	        } catch (NumberFormatException e) {
+	            return defaultValue;
+	        }
+	    }
+
+	    /**
+	     * To get a double config value
+	     *
+	     * @param key
+	     * @param defaultValue
+	     * @return double
+	     */
+	    public static double getDouble(String key, double defaultValue) {
+	        String value = get(key);
+	        try {
+	            return value == null || value.isEmpty() ? defaultValue : Double.parseDouble(value);
+	        } catch (NumberFormatException e) {
+	            return defaultValue;
+	        }
+	    }
+
+	    /**
+	     * To get a comma separated config value as list (blank entries are dropped)
+	     *
+	     * @param key
+	     * @return List of values, empty if not configured
+	     */
+	    public static List<String> getList(String key) {
+	        List<String> values = new ArrayList<>();
+	        String value = get(key);
+	        if (value != null) {
+	            for (String item : value.split(",")) {
+	                if (!item.trim().isEmpty()) {
+	                    values.add(item.trim());
+	                }
+	            }
+	        }
+	        return values;
 	    }
 
 }
@@ -0,0 +1,36 @@
+package utils;
+
+import java.util.List;
+
+/**
+ * Scripted multi-turn scenario: the turns are asked one after another in the same chat
+ */
+public class Conversation {
+	private String id;
+	private String lang;
+	private List<TestData> turns;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getLang() {
+		return lang;
+	}
+
+	public void setLang(String lang) {
+		this.lang = lang;
+	}
+
+	public List<TestData> getTurns() {
+		return turns;
+	}
+
+	public void setTurns(List<TestData> turns) {
+		this.turns = turns;
+	}
+}
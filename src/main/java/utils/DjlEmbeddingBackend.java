@@ -0,0 +1,104 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import ai.djl.Application;
+import ai.djl.ModelException;
+import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ModelZoo;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.TranslateException;
+
+/**
+ * Embedding backend on a DJL engine (PyTorch, OnnxRuntime, ...).
+ * <p>
+ * The model comes either from the DJL model zoo by name (needs network on first use) or from a local
+ * directory holding the exported model file and tokenizer.json, e.g. an int8-quantized ONNX export of
+ * all-MiniLM-L6-v2. The model is loaded once; predictors are not thread-safe, so each call gets its own.
+ * </p>
+ */
+public class DjlEmbeddingBackend implements EmbeddingBackend {
+
+	private final String name;
+	private final ZooModel<String, float[]> model;
+
+	/**
+	 * To load a model from the DJL model zoo
+	 *
+	 * @param name
+	 * 		- backend name for logs/reports
+	 * @param engine
+	 * 		- DJL engine name (PyTorch, OnnxRuntime)
+	 * @param modelName
+	 * 		- model zoo name, e.g. sentence-transformers/all-MiniLM-L6-v2
+	 */
+	public static DjlEmbeddingBackend fromZoo(String name, String engine, String modelName)
+			throws IOException, ModelException {
+		return new DjlEmbeddingBackend(name, Criteria.builder()
+				.setTypes(String.class, float[].class)
+				.optApplication(Application.NLP.TEXT_EMBEDDING)
+				.optEngine(engine)
+				.optModelName(modelName)
+				.build());
+	}
+
+	/**
+	 * To load a model exported to a local directory (model file + tokenizer.json), no network needed
+	 *
+	 * @param name
+	 * 		- backend name for logs/reports
+	 * @param engine
+	 * 		- DJL engine name (PyTorch, OnnxRuntime)
+	 * @param modelDir
+	 * 		- directory of the exported model
+	 * @param modelFile
+	 * 		- model file name without extension (e.g. model_quantized), null for the directory default
+	 */
+	public static DjlEmbeddingBackend fromDirectory(String name, String engine, Path modelDir, String modelFile)
+			throws IOException, ModelException {
+		Criteria.Builder<String, float[]> builder = Criteria.builder()
+				.setTypes(String.class, float[].class)
+				.optApplication(Application.NLP.TEXT_EMBEDDING)
+				.optEngine(engine)
+				.optModelPath(modelDir)
+				.optTranslatorFactory(new TextEmbeddingTranslatorFactory());
+		if (modelFile != null && !modelFile.isEmpty()) {
+			builder.optModelName(modelFile);
+		}
+		return new DjlEmbeddingBackend(name, builder.build());
+	}
+
+	private DjlEmbeddingBackend(String name, Criteria<String, float[]> criteria)
+			throws IOException, ModelException {
+		this.name = name;
+		this.model = ModelZoo.loadModel(criteria);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public float[] embed(String text) throws TranslateException {
+		try (Predictor<String, float[]> predictor = model.newPredictor()) {
+			return predictor.predict(text);
+		}
+	}
+
+	@Override
+	public List<float[]> embedBatch(List<String> texts) throws TranslateException {
+		try (Predictor<String, float[]> predictor = model.newPredictor()) {
+			return predictor.batchPredict(texts);
+		}
+	}
+
+	@Override
+	public void close() {
+		model.close();
+	}
+}
@@ -0,0 +1,227 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Batch of named DOM queries evaluated in a single executeScript round trip.
+ * <p>
+ * Example:
+ * <pre>
+ * DomProbe.Result result = DomProbe.on(driver)
+ *         .property("clientHeight", DomProbe.element(element), "clientHeight")
+ *         .property("scrollHeight", DomProbe.element(element), "scrollHeight")
+ *         .run();
+ * boolean scrolls = result.getDouble("clientHeight") &lt; result.getDouble("scrollHeight");
+ * </pre>
+ * A target starts at an element (or the document) and can walk further with css/cssLast/up/xpath steps
+ * inside the browser, so chained lookups do not cost extra round trips either.
+ * </p>
+ */
+public class DomProbe {
+
+	private static final String SCRIPT =
+			"var specs = arguments[0], out = {};" +
+			"for (var i = 0; i < specs.length; i++) {" +
+			"  var s = specs[i], node = s.element || document;" +
+			"  for (var j = 0; j < s.steps.length && node; j++) {" +
+			"    var op = s.steps[j][0], arg = s.steps[j][1];" +
+			"    if (op === 'css') { node = node.querySelector(arg); }" +
+			"    else if (op === 'cssLast') { var all = node.querySelectorAll(arg); node = all.length ? all[all.length - 1] : null; }" +
+			"    else if (op === 'up') { for (var k = 0; k < arg && node; k++) node = node.parentElement; }" +
+			"    else if (op === 'xpath') { node = document.evaluate(arg, node, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; }" +
+			"  }" +
+			"  var v = null;" +
+			"  if (s.read === 'exists') { v = !!node; }" +
+			"  else if (s.read === 'count') { v = node ? node.querySelectorAll(s.arg).length : 0; }" +
+			"  else if (!node) { v = s.read === 'displayed' ? false : null; }" +
+			"  else if (s.read === 'property') { v = node[s.arg] === undefined ? null : node[s.arg]; }" +
+			"  else if (s.read === 'style') { v = window.getComputedStyle(node)[s.arg]; }" +
+			"  else if (s.read === 'text') { v = node.innerText; }" +
+			"  else if (s.read === 'displayed') {" +
+			"    var style = window.getComputedStyle(node);" +
+			"    v = style.visibility !== 'hidden' && style.display !== 'none' && node.getClientRects().length > 0;" +
+			"  }" +
+			"  out[s.name] = v;" +
+			"}" +
+			"return out;";
+
+	private final WebDriver driver;
+	private final List<Map<String, Object>> specs = new ArrayList<>();
+
+	private DomProbe(WebDriver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * To start a new probe batch
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @return DomProbe
+	 */
+	public static DomProbe on(WebDriver driver) {
+		return new DomProbe(driver);
+	}
+
+	/**
+	 * To start a target at the given element
+	 *
+	 * @param element
+	 * @return Target
+	 */
+	public static Target element(WebElement element) {
+		return new Target(element);
+	}
+
+	/**
+	 * To start a target at the document
+	 *
+	 * @return Target
+	 */
+	public static Target document() {
+		return new Target(null);
+	}
+
+	/**
+	 * Node to read from: a start element followed by steps evaluated in the browser
+	 */
+	public static class Target {
+		private final WebElement element;
+		private final List<List<Object>> steps = new ArrayList<>();
+
+		private Target(WebElement element) {
+			this.element = element;
+		}
+
+		/** first match of the css selector below the current node */
+		public Target css(String selector) {
+			return step("css", selector);
+		}
+
+		/** last match of the css selector below the current node */
+		public Target cssLast(String selector) {
+			return step("cssLast", selector);
+		}
+
+		/** n-th ancestor of the current node */
+		public Target up(int levels) {
+			return step("up", levels);
+		}
+
+		/** first match of the xpath evaluated with the current node as context */
+		public Target xpath(String expression) {
+			return step("xpath", expression);
+		}
+
+		private Target step(String op, Object arg) {
+			List<Object> step = new ArrayList<>();
+			step.add(op);
+			step.add(arg);
+			steps.add(step);
+			return this;
+		}
+	}
+
+	/** To read a DOM property (clientHeight, value, ...) */
+	public DomProbe property(String name, Target target, String property) {
+		return add(name, target, "property", property);
+	}
+
+	/** To read a computed style (direction, display, ...) */
+	public DomProbe style(String name, Target target, String cssProperty) {
+		return add(name, target, "style", cssProperty);
+	}
+
+	/** To read the rendered text */
+	public DomProbe text(String name, Target target) {
+		return add(name, target, "text", null);
+	}
+
+	/** To check the target exists */
+	public DomProbe exists(String name, Target target) {
+		return add(name, target, "exists", null);
+	}
+
+	/** To check the target exists and is rendered (not display:none / visibility:hidden / zero-size) */
+	public DomProbe displayed(String name, Target target) {
+		return add(name, target, "displayed", null);
+	}
+
+	/** To count matches of the css selector below the target */
+	public DomProbe count(String name, Target target, String selector) {
+		return add(name, target, "count", selector);
+	}
+
+	/**
+	 * To evaluate all queries of the batch in one executeScript call
+	 *
+	 * @return Result with a value per query name
+	 */
+	@SuppressWarnings("unchecked")
+	public Result run() {
+		Object value = ((JavascriptExecutor) driver).executeScript(SCRIPT, specs);
+		return new Result(value instanceof Map ? (Map<String, Object>) value : new HashMap<>());
+	}
+
+	private DomProbe add(String name, Target target, String read, String arg) {
+		Map<String, Object> spec = new LinkedHashMap<>();
+		spec.put("name", name);
+		spec.put("element", target.element);
+		spec.put("steps", target.steps);
+		spec.put("read", read);
+		spec.put("arg", arg);
+		specs.add(spec);
+		return this;
+	}
+
+	/**
+	 * Typed view of the probe values
+	 */
+	public static class Result {
+		private final Map<String, Object> values;
+
+		Result(Map<String, Object> values) {
+			this.values = values;
+		}
+
+		public Object get(String name) {
+			return values.get(name);
+		}
+
+		public String getString(String name) {
+			Object value = values.get(name);
+			return value != null ? value.toString() : null;
+		}
+
+		public double getDouble(String name) {
+			Object value = values.get(name);
+			return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+		}
+
+		public long getLong(String name) {
+			Object value = values.get(name);
+			return value instanceof Number ? ((Number) value).longValue() : 0;
+		}
+
+		public boolean getBoolean(String name) {
+			return Boolean.TRUE.equals(values.get(name));
+		}
+
+		public Map<String, Object> asMap() {
+			return new LinkedHashMap<>(values);
+		}
+
+		@Override
+		public String toString() {
+			return values.toString();
+		}
+	}
+}
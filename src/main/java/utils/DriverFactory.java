@@ -1,44 +1,206 @@
 package utils;
 
+import java.nio.file.Path;
 import java.util.*;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.Connection;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.devtools.SeleniumCdpConnection;
+import org.openqa.selenium.json.Json;
 
 public class DriverFactory {
 
+	private static final Logger log = LogManager.getLogger(DriverFactory.class);
+
 	/**
 	 * To creates WebDriver with desktop or mobile viewport
-	 * 
+	 *
 	 * @param deviceName "desktop" or "mobile"
 	 * @return WebDriver instance
 	 */
 	public static WebDriver createDriver(String deviceName) {
+		String device = deviceName.toLowerCase();
+		ChromeOptions options = createOptions(device);
+
+		// start from a clone of the warm profile of the device (HTTP cache, code cache, service workers)
+		Path clone = null;
+		if (ProfileTemplates.isEnabled()) {
+			try {
+				clone = ProfileTemplates.newClone(device, () -> createOptions(device));
+				options.addArguments("--user-data-dir=" + clone.toAbsolutePath());
+			} catch (RuntimeException e) {
+				log.warn("Warm profile not available for " + device + ", starting with an empty profile: " + e.getMessage());
+			}
+		}
+
+		WebDriver driver;
+		try {
+			driver = new ChromeDriver(options);
+		} catch (RuntimeException e) {
+			if (clone != null) ProfileTemplates.discard(clone);
+			throw e;
+		}
+		if (clone != null) {
+			ProfileTemplates.register(driver, device, clone);
+		}
+		if (device.equals("desktop")) {
+			driver.manage().window().maximize();
+		}
+
+		if (ConfigReader.getBoolean("leanProfile", false)) {
+			blockRequests(driver);
+		}
+		PerformanceCapture.enable(driver);
+		return driver;
+	}
+
+	/**
+	 * To build the ChromeOptions of a device: lean/headless mode and viewport or mobile emulation
+	 *
+	 * @param device
+	 * 		- desktop, iphone12pro, ipad or android
+	 * @return ChromeOptions
+	 */
+	private static ChromeOptions createOptions(String device) {
 		ChromeOptions options = new ChromeOptions();
+		boolean lean = ConfigReader.getBoolean("leanProfile", false);
+		boolean headless = lean || ConfigReader.getBoolean("headless", false);
+
+		if (lean) {
+			applyLeanProfile(options);
+		} else if (headless) {
+			options.addArguments("--headless=new");
+		}
 
-		switch (deviceName.toLowerCase()) {
+		switch (device) {
 		case "desktop":
-			WebDriver driver = new ChromeDriver(options);
-			driver.manage().window().maximize();
-			return driver;
+			if (headless) {
+				// maximize() is a no-op without a window manager
+				options.addArguments("--window-size=1920,1080");
+			}
+			break;
 		case "iphone12pro":
 			Map<String, Object> iphone = new HashMap<>();
 			iphone.put("deviceName", "iPhone 12 Pro");
 			options.setExperimentalOption("mobileEmulation", iphone);
-			return new ChromeDriver(options);
+			break;
 		case "ipad":
 			Map<String, Object> ipad = new HashMap<>();
 			ipad.put("deviceName", "iPad");
 			options.setExperimentalOption("mobileEmulation", ipad);
-			return new ChromeDriver(options);
+			break;
 		case "android":
 			Map<String, Object> android = new HashMap<>();
 			android.put("deviceName", "Pixel 5"); // choose any Pixel/Android device
 			options.setExperimentalOption("mobileEmulation", android);
-			return new ChromeDriver(options);
+			break;
 		default:
-			throw new IllegalArgumentException("Unknown device: " + deviceName);
+			throw new IllegalArgumentException("Unknown device: " + device);
+		}
+		return options;
+	}
+
+	/**
+	 * To apply the lean browser profile: new headless mode without extensions, GPU and background networking
+	 *
+	 * @param options
+	 * 		- ChromeOptions to update
+	 */
+	private static void applyLeanProfile(ChromeOptions options) {
+		options.addArguments(
+				"--headless=new",
+				"--disable-extensions",
+				"--disable-gpu",
+				"--disable-background-networking",
+				"--disable-component-update",
+				"--disable-default-apps",
+				"--disable-sync",
+				"--no-first-run",
+				"--mute-audio");
+	}
+
+	/**
+	 * To block the configured URL patterns (blockedUrlPatterns) and resource types (blockedResourceTypes)
+	 * through CDP on the first tab. Works for the mobile emulation profiles as well; tabs opened later need
+	 * {@link #blockRequestsInTab(WebDriver)}.
+	 *
+	 * @param driver
+	 * 		- freshly created WebDriver, before the first navigation
+	 */
+	private static void blockRequests(WebDriver driver) {
+		List<String> urlPatterns = ConfigReader.getList("blockedUrlPatterns");
+		List<String> resourceTypes = ConfigReader.getList("blockedResourceTypes");
+		if (urlPatterns.isEmpty() && resourceTypes.isEmpty()) {
+			return;
+		}
+
+		try {
+			DevTools devTools = ((HasDevTools) driver).getDevTools();
+			devTools.createSessionIfThereIsNotOne();
+			enableBlocking(devTools, urlPatterns, resourceTypes);
+			log.info("Request blocking enabled. URL patterns: " + urlPatterns + ", resource types: " + resourceTypes);
+		} catch (Exception e) {
+			log.warn("Unable to enable request blocking via CDP: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To apply the request blocking of the lean profile to the current tab, which is a CDP target of its own
+	 * (the blocking of createDriver covers the first tab only). The tab gets its own CDP connection, so paused
+	 * requests are answered in the session of the tab they came from.
+	 *
+	 * @param driver
+	 * 		- WebDriver switched to the new tab, before its first navigation
+	 * @return DevTools of the tab, to close together with the tab; null if nothing is blocked
+	 */
+	public static DevTools blockRequestsInTab(WebDriver driver) {
+		List<String> urlPatterns = ConfigReader.getList("blockedUrlPatterns");
+		List<String> resourceTypes = ConfigReader.getList("blockedResourceTypes");
+		if (!ConfigReader.getBoolean("leanProfile", false) || (urlPatterns.isEmpty() && resourceTypes.isEmpty())) {
+			return null;
+		}
+
+		try {
+			DevTools browserTools = ((HasDevTools) driver).getDevTools();
+			Connection connection = SeleniumCdpConnection.create(driver)
+					.orElseThrow(() -> new IllegalStateException("no CDP endpoint"));
+			DevTools tabTools = new DevTools(tools -> browserTools.getDomains(), connection);
+			tabTools.createSession(driver.getWindowHandle());
+			enableBlocking(tabTools, urlPatterns, resourceTypes);
+			return tabTools;
+		} catch (Exception e) {
+			log.warn("Unable to enable request blocking for tab via CDP: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static void enableBlocking(DevTools devTools, List<String> urlPatterns, List<String> resourceTypes) {
+		if (!urlPatterns.isEmpty()) {
+			devTools.send(new Command<Void>("Network.enable", new HashMap<>()));
+			devTools.send(new Command<Void>("Network.setBlockedURLs", Map.of("urls", urlPatterns)));
+		}
+
+		if (!resourceTypes.isEmpty()) {
+			List<Map<String, Object>> patterns = new ArrayList<>();
+			for (String type : resourceTypes) {
+				patterns.add(Map.of("urlPattern", "*", "resourceType", type, "requestStage", "Request"));
+			}
+			devTools.send(new Command<Void>("Fetch.enable", Map.of("patterns", patterns)));
+
+			// Only the configured resource types are paused, so every paused request gets failed
+			devTools.addListener(new Event<String>("Fetch.requestPaused", input -> {
+				Map<String, Object> params = input.read(Json.MAP_TYPE);
+				return (String) params.get("requestId");
+			}), requestId -> devTools.send(new Command<Void>("Fetch.failRequest",
+					Map.of("requestId", requestId, "errorReason", "BlockedByClient"))));
 		}
 	}
 }
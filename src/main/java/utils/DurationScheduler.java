@@ -0,0 +1,238 @@
+package utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.xml.XmlSuite;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Longest-first scheduling of test methods from their duration in previous runs.
+ * <p>
+ * The methods of a &lt;test&gt; are ordered by predicted duration (longest processing time first), so a slow
+ * test does not start last and stretch the run. Their TestNG priority is replaced by that order; methods
+ * with dependsOnMethods / dependsOnGroups keep their own priority, TestNG orders them by the dependency.
+ * The total duration of every method (all data provider invocations) is kept in test-output/duration-history.json,
+ * and predicted versus actual makespan is reported when the &lt;test&gt; finishes.
+ * Register it after ShardMethodInterceptor, so only the methods of the shard are scheduled.
+ * </p>
+ */
+public class DurationScheduler implements IMethodInterceptor, ITestListener {
+
+	private static final Logger log = LogManager.getLogger(DurationScheduler.class);
+
+	private static final String HISTORY_FILE = "test-output/duration-history.json";
+	private static final int MAX_SAMPLES = 10;
+	private static final long DEFAULT_MILLIS = ConfigReader.getInt("schedulerDefaultSeconds", 30) * 1000L;
+
+	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private static final Map<String, List<Long>> history = loadHistory();
+
+	// Durations of the current run and predicted makespan, per method key / <test> name
+	private final Map<String, Long> actual = new ConcurrentHashMap<>();
+	private final Map<String, Long> predictedMakespan = new ConcurrentHashMap<>();
+
+	/**
+	 * To order the methods longest-first and compute the predicted makespan of the &lt;test&gt;
+	 */
+	@Override
+	public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+		Map<IMethodInstance, Long> predicted = new ConcurrentHashMap<>();
+		long fallback = fallbackMillis();
+		for (IMethodInstance instance : methods) {
+			Long millis = predict(key(context, instance.getMethod()));
+			predicted.put(instance, millis != null ? millis : fallback);
+		}
+
+		List<IMethodInstance> ordered = new ArrayList<>(methods);
+		ordered.sort(Comparator.comparing(predicted::get, Comparator.reverseOrder()));
+
+		int rank = 0;
+		for (IMethodInstance instance : ordered) {
+			ITestNGMethod method = instance.getMethod();
+			if (method.getMethodsDependedUpon().length == 0 && method.getGroupsDependedUpon().length == 0) {
+				method.setPriority(rank++);
+			}
+		}
+
+		int workers = workers(context);
+		List<Long> durations = new ArrayList<>();
+		for (IMethodInstance instance : ordered) {
+			durations.add(predicted.get(instance));
+		}
+		long makespan = makespan(durations, workers);
+		predictedMakespan.put(context.getName(), makespan);
+		log.info(String.format("'%s' runs %d methods longest-first on %d threads, predicted makespan %.1f s",
+				context.getName(), ordered.size(), workers, makespan / 1000.0));
+		return ordered;
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		record(result);
+	}
+
+	/**
+	 * To report predicted versus actual makespan of the &lt;test&gt; and save the durations
+	 */
+	@Override
+	public void onFinish(ITestContext context) {
+		Long predicted = predictedMakespan.remove(context.getName());
+		long makespan = context.getEndDate().getTime() - context.getStartDate().getTime();
+		if (predicted != null) {
+			log.info(String.format("'%s' makespan predicted %.1f s, actual %.1f s (%+.0f%%)",
+					context.getName(), predicted / 1000.0, makespan / 1000.0,
+					predicted > 0 ? 100.0 * (makespan - predicted) / predicted : 0));
+			Metrics.set("uask_makespan_seconds", "Makespan of a <test> tag", predicted / 1000.0,
+					"test", context.getName(), "kind", "predicted");
+		}
+		Metrics.set("uask_makespan_seconds", "Makespan of a <test> tag", makespan / 1000.0,
+				"test", context.getName(), "kind", "actual");
+
+		String prefix = context.getName() + "/";
+		actual.forEach((key, millis) -> {
+			if (key.startsWith(prefix)) {
+				addSample(key, millis);
+				actual.remove(key);
+			}
+		});
+		saveHistory();
+	}
+
+	/**
+	 * Makespan of the list scheduled in order on the given number of workers, each method going to the
+	 * worker which becomes free first
+	 */
+	static long makespan(List<Long> durations, int workers) {
+		PriorityQueue<Long> loads = new PriorityQueue<>();
+		for (int i = 0; i < Math.max(1, workers); i++) {
+			loads.add(0L);
+		}
+		long makespan = 0;
+		for (long duration : durations) {
+			long end = loads.poll() + duration;
+			makespan = Math.max(makespan, end);
+			loads.add(end);
+		}
+		return makespan;
+	}
+
+	private void record(ITestResult result) {
+		String key = key(result.getTestContext(), result.getMethod());
+		actual.merge(key, Math.max(0, result.getEndMillis() - result.getStartMillis()), Long::sum);
+	}
+
+	private static String key(ITestContext context, ITestNGMethod method) {
+		return context.getName() + "/" + method.getRealClass().getName() + "." + method.getMethodName();
+	}
+
+	private static int workers(ITestContext context) {
+		XmlSuite.ParallelMode mode = context.getCurrentXmlTest().getParallel();
+		if (mode == null || !mode.isParallel()) return 1;
+		return Math.max(1, context.getCurrentXmlTest().getThreadCount());
+	}
+
+	/**
+	 * Median duration of the previous runs, null without history
+	 */
+	private static Long predict(String key) {
+		List<Long> samples = history.get(key);
+		if (samples == null || samples.isEmpty()) return null;
+		List<Long> sorted;
+		synchronized (samples) {
+			sorted = new ArrayList<>(samples);
+		}
+		Collections.sort(sorted);
+		return sorted.get(sorted.size() / 2);
+	}
+
+	/**
+	 * Duration for methods without history: median of all known methods, else schedulerDefaultSeconds
+	 */
+	private static long fallbackMillis() {
+		List<Long> known = new ArrayList<>();
+		for (String key : history.keySet()) {
+			Long millis = predict(key);
+			if (millis != null) known.add(millis);
+		}
+		if (known.isEmpty()) return DEFAULT_MILLIS;
+		Collections.sort(known);
+		return known.get(known.size() / 2);
+	}
+
+	private static void addSample(String key, long millis) {
+		List<Long> samples = history.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()));
+		synchronized (samples) {
+			samples.add(millis);
+			if (samples.size() > MAX_SAMPLES) {
+				samples.remove(0);
+			}
+		}
+	}
+
+	private static synchronized void saveHistory() {
+		File file = new File(HISTORY_FILE);
+		file.getParentFile().mkdirs();
+		try (Writer writer = new FileWriter(file)) {
+			Map<String, List<Long>> snapshot = new TreeMap<>();
+			history.forEach((key, samples) -> {
+				synchronized (samples) {
+					snapshot.put(key, new ArrayList<>(samples));
+				}
+			});
+			gson.toJson(snapshot, writer);
+		} catch (Exception e) {
+			log.warn("Could not save " + HISTORY_FILE + ": " + e.getMessage());
+		}
+	}
+
+	private static Map<String, List<Long>> loadHistory() {
+		Map<String, List<Long>> loaded = new ConcurrentHashMap<>();
+		File file = new File(HISTORY_FILE);
+		if (file.exists()) {
+			try (Reader reader = new FileReader(file)) {
+				Type type = new TypeToken<Map<String, List<Long>>>() {}.getType();
+				Map<String, List<Long>> saved = gson.fromJson(reader, type);
+				if (saved != null) {
+					saved.forEach((key, samples) -> loaded.put(key, Collections.synchronizedList(new ArrayList<>(samples))));
+				}
+			} catch (Exception e) {
+				log.warn("Could not read " + HISTORY_FILE + ": " + e.getMessage());
+			}
+		}
+		return loaded;
+	}
+}
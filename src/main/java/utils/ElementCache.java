@@ -0,0 +1,206 @@
+package utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.PageFactory;
+import org.openqa.selenium.support.pagefactory.Annotations;
+import org.openqa.selenium.support.pagefactory.DefaultFieldDecorator;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+import org.openqa.selenium.support.pagefactory.ElementLocatorFactory;
+
+/**
+ * Page-object element layer which caches resolved @FindBy elements and lists.
+ * <p>
+ * Plain PageFactory proxies run findElement(s) over the wire on every call. Here a resolved element or
+ * list is reused until the page signals a DOM change with {@link #invalidate()} (after sending a message,
+ * before polling for new responses, ...) or until a StaleElementReferenceException shows the cached
+ * element is gone, in which case it is located again and the call is retried once.
+ * </p>
+ */
+public class ElementCache {
+
+	// Round trips of the current test thread: [0] lookups done, [1] lookups saved by the cache
+	private static final ThreadLocal<long[]> counters = ThreadLocal.withInitial(() -> new long[2]);
+
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * To initialize the @FindBy fields of a page object with caching proxies
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @param page
+	 * 		- page object
+	 * @return ElementCache of the page, used to signal DOM changes
+	 */
+	public static ElementCache initElements(WebDriver driver, Object page) {
+		ElementCache cache = new ElementCache();
+		PageFactory.initElements(new CachingFieldDecorator(field -> new CachingLocator(driver, field, cache)), page);
+		return cache;
+	}
+
+	/**
+	 * To signal a DOM change: all cached elements and lists of the page are located again on next use
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * To get number of element lookups sent to the browser by the current thread
+	 *
+	 * @return long
+	 */
+	public static long getLookups() {
+		return counters.get()[0];
+	}
+
+	/**
+	 * To get number of element lookups answered from the cache by the current thread
+	 *
+	 * @return long
+	 */
+	public static long getSavedLookups() {
+		return counters.get()[1];
+	}
+
+	/**
+	 * To reset the counters of the current thread (at the end of a test)
+	 */
+	public static void resetCounters() {
+		counters.remove();
+	}
+
+	/**
+	 * Locator which keeps the last resolved element/list until the cache generation changes
+	 */
+	private static class CachingLocator implements ElementLocator {
+		private final SearchContext searchContext;
+		private final By by;
+		private final ElementCache cache;
+		private WebElement element;
+		private List<WebElement> elements;
+		private int elementGeneration = -1;
+		private int elementsGeneration = -1;
+
+		CachingLocator(SearchContext searchContext, Field field, ElementCache cache) {
+			this.searchContext = searchContext;
+			this.by = new Annotations(field).buildBy();
+			this.cache = cache;
+		}
+
+		@Override
+		public synchronized WebElement findElement() {
+			if (element != null && elementGeneration == cache.generation.get()) {
+				counters.get()[1]++;
+				return element;
+			}
+			counters.get()[0]++;
+			element = searchContext.findElement(by);
+			elementGeneration = cache.generation.get();
+			return element;
+		}
+
+		@Override
+		public synchronized List<WebElement> findElements() {
+			if (elements != null && elementsGeneration == cache.generation.get()) {
+				counters.get()[1]++;
+				return elements;
+			}
+			counters.get()[0]++;
+			elements = searchContext.findElements(by);
+			elementsGeneration = cache.generation.get();
+			return elements;
+		}
+
+		synchronized void invalidate() {
+			element = null;
+			elements = null;
+		}
+
+		@Override
+		public String toString() {
+			return "CachingLocator '" + by + "'";
+		}
+	}
+
+	/**
+	 * Decorator which creates stale-aware proxies on top of the caching locators
+	 */
+	private static class CachingFieldDecorator extends DefaultFieldDecorator {
+
+		CachingFieldDecorator(ElementLocatorFactory factory) {
+			super(factory);
+		}
+
+		@Override
+		protected WebElement proxyForLocator(ClassLoader loader, ElementLocator locator) {
+			return elementProxy(loader, (CachingLocator) locator, -1);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected List<WebElement> proxyForListLocator(ClassLoader loader, ElementLocator locator) {
+			CachingLocator cachingLocator = (CachingLocator) locator;
+			InvocationHandler handler = (proxy, method, args) -> {
+				List<WebElement> found = cachingLocator.findElements();
+				if ("get".equals(method.getName()) && args != null && args.length == 1) {
+					// wrap, so a stale element of the list re-resolves the list
+					found.get((Integer) args[0]); // keeps IndexOutOfBoundsException of a plain list
+					return elementProxy(loader, cachingLocator, (Integer) args[0]);
+				}
+				if ("toString".equals(method.getName())) {
+					return "Proxy list for: " + cachingLocator;
+				}
+				return invoke(method, found, args);
+			};
+			return (List<WebElement>) Proxy.newProxyInstance(loader, new Class<?>[]{List.class}, handler);
+		}
+
+		private WebElement elementProxy(ClassLoader loader, CachingLocator locator, int index) {
+			InvocationHandler handler = (proxy, method, args) -> {
+				if ("toString".equals(method.getName())) {
+					return "Proxy element for: " + locator + (index >= 0 ? "[" + index + "]" : "");
+				}
+				for (int attempt = 0; ; attempt++) {
+					WebElement element = index >= 0 ? locator.findElements().get(index) : locator.findElement();
+					if ("getWrappedElement".equals(method.getName())) {
+						return element;
+					}
+					try {
+						return invoke(method, element, args);
+					} catch (StaleElementReferenceException e) {
+						if (attempt > 0) {
+							TransientRetryAnalyzer.markTransient("Stale element " + locator);
+							throw e;
+						}
+						locator.invalidate();
+					}
+				}
+			};
+			return (WebElement) Proxy.newProxyInstance(loader,
+					new Class<?>[]{WebElement.class, WrapsElement.class, Locatable.class}, handler);
+		}
+
+		private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
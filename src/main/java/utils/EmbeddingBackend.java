@@ -0,0 +1,52 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ai.djl.translate.TranslateException;
+
+/**
+ * Sentence embedding model used for semantic similarity.
+ * <p>
+ * Implementations are created by {@link EmbeddingBackends} from config (embeddingBackend) and shared by
+ * all test threads, so {@link #embed(String)} must be thread-safe.
+ * </p>
+ */
+public interface EmbeddingBackend extends AutoCloseable {
+
+	/**
+	 * To get the name used in logs and benchmark reports
+	 *
+	 * @return String
+	 */
+	String getName();
+
+	/**
+	 * To compute the embedding of a single text
+	 *
+	 * @param text
+	 * @return embedding vector
+	 * @throws TranslateException
+	 * 		- if the model fails on the input
+	 */
+	float[] embed(String text) throws TranslateException;
+
+	/**
+	 * To compute the embeddings of several texts, backends with real batching override this
+	 *
+	 * @param texts
+	 * @return embedding vectors in the order of the texts
+	 * @throws TranslateException
+	 * 		- if the model fails on an input
+	 */
+	default List<float[]> embedBatch(List<String> texts) throws TranslateException {
+		List<float[]> embeddings = new ArrayList<>();
+		for (String text : texts) {
+			embeddings.add(embed(text));
+		}
+		return embeddings;
+	}
+
+	@Override
+	void close();
+}
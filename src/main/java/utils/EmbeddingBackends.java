@@ -0,0 +1,92 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ai.djl.ModelException;
+
+/**
+ * Creates embedding backends by name and holds the one shared by the suite.
+ * <p>
+ * embeddingBackend = pytorch (FP32 all-MiniLM-L6-v2, model zoo or embeddingModelPath),
+ * onnx (OnnxRuntime model from onnxModelPath/onnxModelFile, e.g. the int8-quantized export) or the
+ * fully qualified name of a custom {@link EmbeddingBackend} with a public no-arg constructor.
+ * The onnx backend needs ai.djl.onnxruntime:onnxruntime-engine on the classpath.
+ * </p>
+ */
+public class EmbeddingBackends {
+
+	private static final Logger log = LogManager.getLogger(EmbeddingBackends.class);
+
+	public static final String PYTORCH = "pytorch";
+	public static final String ONNX = "onnx";
+
+	private static volatile EmbeddingBackend shared;
+
+	/**
+	 * To get the backend selected in config, loaded on first use and shared by all threads.
+	 * With embeddingDaemon=true this is a client of the machine-wide {@link EmbeddingServer},
+	 * falling back to an in-process model when the daemon cannot be reached.
+	 *
+	 * @return EmbeddingBackend
+	 */
+	public static EmbeddingBackend get() throws IOException, ModelException {
+		EmbeddingBackend backend = shared;
+		if (backend == null) {
+			synchronized (EmbeddingBackends.class) {
+				backend = shared;
+				if (backend == null) {
+					if (ConfigReader.getBoolean("embeddingDaemon", false)) {
+						backend = EmbeddingClient.connectOrStart();
+					}
+					if (backend == null) {
+						backend = create(ConfigReader.get("embeddingBackend", PYTORCH));
+					}
+					shared = backend;
+				}
+			}
+		}
+		return backend;
+	}
+
+	/**
+	 * To create a new backend by name (pytorch, onnx or class name), the caller closes it
+	 *
+	 * @param name
+	 * @return EmbeddingBackend
+	 */
+	public static EmbeddingBackend create(String name) throws IOException, ModelException {
+		long start = System.nanoTime();
+		EmbeddingBackend backend;
+		switch (name.toLowerCase()) {
+		case PYTORCH:
+			String modelPath = ConfigReader.get("embeddingModelPath", "");
+			backend = modelPath.isEmpty()
+					? DjlEmbeddingBackend.fromZoo(PYTORCH, "PyTorch",
+							ConfigReader.get("embeddingModelName", "sentence-transformers/all-MiniLM-L6-v2"))
+					: DjlEmbeddingBackend.fromDirectory(PYTORCH, "PyTorch", Paths.get(modelPath), null);
+			break;
+		case ONNX:
+			backend = DjlEmbeddingBackend.fromDirectory(ONNX, "OnnxRuntime",
+					Paths.get(ConfigReader.get("onnxModelPath", "models/all-MiniLM-L6-v2-onnx")),
+					ConfigReader.get("onnxModelFile", "model_quantized"));
+			break;
+		default:
+			backend = instantiate(name);
+		}
+		log.info("Embedding backend '" + backend.getName() + "' loaded in "
+				+ (System.nanoTime() - start) / 1_000_000 + " ms");
+		return backend;
+	}
+
+	private static EmbeddingBackend instantiate(String className) {
+		try {
+			return (EmbeddingBackend) Class.forName(className).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException("Unknown embedding backend: " + className, e);
+		}
+	}
+}
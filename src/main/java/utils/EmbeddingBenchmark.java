@@ -0,0 +1,169 @@
+package utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares embedding backends against the reference FP32 model on the question corpus: load time,
+ * resident memory, single-text latency (p50/p99), batched throughput, score drift and verdict flips
+ * (pairs whose pass/fail changes at the question threshold).
+ * <p>
+ * Usage (one backend per JVM would be cleaner for RSS, but loading sequentially keeps the deltas readable):
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=utils.EmbeddingBenchmark -Dexec.args="pytorch onnx"
+ * </pre>
+ * The first backend is the reference. Results go to stdout and test-output/embedding-benchmark.json.
+ * </p>
+ */
+public class EmbeddingBenchmark {
+
+	private static final String FILE_PATH = "src/main/resources/test-data.json";
+	private static final String RESULT_FILE = "test-output/embedding-benchmark.json";
+	private static final int ROUNDS = ConfigReader.getInt("benchmarkRounds", 5);
+	private static final int WARMUP = 3;
+
+	public static void main(String[] args) throws Exception {
+		List<String> names = new ArrayList<>();
+		Collections.addAll(names, args);
+		if (names.isEmpty()) {
+			names.add(EmbeddingBackends.PYTORCH);
+			names.add(EmbeddingBackends.ONNX);
+		}
+
+		List<TestData> questions = new ArrayList<>();
+		addAll(questions, JsonUtils.getAllUIQuestions(FILE_PATH));
+		addAll(questions, JsonUtils.getAllApiQuestions(FILE_PATH));
+		addAll(questions, JsonUtils.getAllSecurityTests(FILE_PATH));
+
+		List<String> texts = new ArrayList<>();
+		for (TestData question : questions) {
+			texts.add(expectedOf(question));
+			texts.add(actualOf(question));
+		}
+
+		List<Map<String, Object>> results = new ArrayList<>();
+		double[] referenceScores = null;
+		for (String name : names) {
+			Map<String, Object> result = run(name, questions, texts, referenceScores);
+			if (referenceScores == null) {
+				referenceScores = (double[]) result.remove("scores");
+			} else {
+				result.remove("scores");
+			}
+			results.add(result);
+		}
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		File file = new File(RESULT_FILE);
+		file.getParentFile().mkdirs();
+		try (Writer writer = new FileWriter(file)) {
+			gson.toJson(results, writer);
+		}
+
+		System.out.println(String.format("%-12s %10s %10s %10s %10s %12s %12s %8s",
+				"backend", "load ms", "rss MB", "p50 ms", "p99 ms", "texts/sec", "max drift", "flips"));
+		for (Map<String, Object> result : results) {
+			System.out.println(String.format("%-12s %10s %10s %10s %10s %12s %12s %8s",
+					result.get("backend"), result.get("loadMs"), result.get("rssMb"), result.get("p50Ms"),
+					result.get("p99Ms"), result.get("textsPerSecond"), result.get("maxScoreDrift"), result.get("verdictFlips")));
+		}
+		System.out.println("Written to " + file.getAbsolutePath());
+	}
+
+	private static Map<String, Object> run(String name, List<TestData> questions, List<String> texts,
+			double[] referenceScores) throws Exception {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("backend", name);
+
+		long rssBefore = residentMemoryKb();
+		long start = System.nanoTime();
+		try (EmbeddingBackend backend = EmbeddingBackends.create(name)) {
+			result.put("loadMs", (System.nanoTime() - start) / 1_000_000);
+
+			for (int i = 0; i < WARMUP; i++) {
+				backend.embed(texts.get(i % texts.size()));
+			}
+
+			List<Long> latencies = new ArrayList<>();
+			for (int round = 0; round < ROUNDS; round++) {
+				for (String text : texts) {
+					long callStart = System.nanoTime();
+					backend.embed(text);
+					latencies.add((System.nanoTime() - callStart) / 1000);
+				}
+			}
+			Collections.sort(latencies);
+			result.put("p50Ms", ShardReport.percentile(latencies, 50) / 1000.0);
+			result.put("p99Ms", ShardReport.percentile(latencies, 99) / 1000.0);
+
+			long batchStart = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++) {
+				backend.embedBatch(texts);
+			}
+			double seconds = (System.nanoTime() - batchStart) / 1e9;
+			result.put("textsPerSecond", Math.round(ROUNDS * texts.size() / seconds));
+			result.put("rssMb", rssBefore >= 0 ? (residentMemoryKb() - rssBefore) / 1024 : -1);
+
+			double[] scores = new double[questions.size()];
+			double maxDrift = 0, totalDrift = 0;
+			int flips = 0;
+			for (int i = 0; i < questions.size(); i++) {
+				TestData question = questions.get(i);
+				scores[i] = TextUtils.cosineSimilarity(backend.embed(expectedOf(question)), backend.embed(actualOf(question)));
+				if (referenceScores != null) {
+					double drift = Math.abs(scores[i] - referenceScores[i]);
+					maxDrift = Math.max(maxDrift, drift);
+					totalDrift += drift;
+					if ((scores[i] >= question.getThreshold()) != (referenceScores[i] >= question.getThreshold())) {
+						flips++;
+					}
+				}
+			}
+			result.put("maxScoreDrift", String.format("%.4f", maxDrift));
+			result.put("meanScoreDrift", String.format("%.4f", totalDrift / questions.size()));
+			result.put("verdictFlips", flips);
+			result.put("scores", scores);
+		}
+		return result;
+	}
+
+	private static String expectedOf(TestData question) {
+		return question.getExpected() != null ? question.getExpected() : question.getExpectedFallback();
+	}
+
+	private static String actualOf(TestData question) {
+		return question.getActual() != null && !question.getActual().isEmpty() ? question.getActual() : question.getInput();
+	}
+
+	private static void addAll(List<TestData> target, List<TestData> questions) {
+		if (questions != null) target.addAll(questions);
+	}
+
+	/**
+	 * VmRSS of this process in KB from /proc, -1 where /proc is not available
+	 */
+	private static long residentMemoryKb() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("\\D", ""));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			// not on Linux
+		}
+		return -1;
+	}
+}
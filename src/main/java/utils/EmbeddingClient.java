@@ -0,0 +1,281 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ai.djl.translate.TranslateException;
+
+/**
+ * Embedding backend which forwards batches to the shared {@link EmbeddingServer} daemon.
+ * <p>
+ * Each test thread keeps its own connection, which starts with a hello: a daemon speaking another protocol
+ * version or serving another backend or model (started by a JVM with other settings) is not used. If the
+ * daemon goes away or is replaced by such a daemon during the run, the call is retried once on a new
+ * connection and then falls back to an in-process backend for the rest of the run.
+ * </p>
+ */
+public class EmbeddingClient implements EmbeddingBackend {
+
+	private static final Logger log = LogManager.getLogger(EmbeddingClient.class);
+
+	private final SocketAddress address;
+	private final ThreadLocal<Connection> connections = new ThreadLocal<>();
+	private final List<Connection> opened = Collections.synchronizedList(new ArrayList<>());
+	private volatile EmbeddingBackend fallback;
+
+	private EmbeddingClient(SocketAddress address) {
+		this.address = address;
+	}
+
+	/**
+	 * To connect to the daemon, starting it in the background when it is not running yet
+	 *
+	 * @return client, or null when no daemon could be reached within embeddingDaemonStartSeconds or the
+	 * 		running daemon serves another protocol version or model
+	 */
+	public static EmbeddingClient connectOrStart() {
+		SocketAddress address = EmbeddingServer.address();
+		if (!isReachable(address)) {
+			try {
+				startDaemon();
+			} catch (IOException e) {
+				log.warn("Could not start embedding daemon: " + e.getMessage());
+				return null;
+			}
+			long deadline = System.currentTimeMillis() + ConfigReader.getInt("embeddingDaemonStartSeconds", 60) * 1000L;
+			while (!isReachable(address)) {
+				if (System.currentTimeMillis() > deadline) {
+					log.warn("Embedding daemon did not come up on " + address);
+					return null;
+				}
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+		}
+		Connection probe = null;
+		try {
+			probe = Connection.open(address);
+		} catch (IOException e) {
+			log.warn("Not using embedding daemon on " + address + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (probe != null) probe.close();
+		}
+		log.info("Using embedding daemon '" + EmbeddingServer.identity() + "' on " + address);
+		return new EmbeddingClient(address);
+	}
+
+	/**
+	 * To check whether a daemon accepts connections on the address
+	 *
+	 * @param address
+	 * @return boolean
+	 */
+	static boolean isReachable(SocketAddress address) {
+		try {
+			SocketChannel.open(address).close();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "daemon@" + address;
+	}
+
+	@Override
+	public float[] embed(String text) throws TranslateException {
+		return embedBatch(Collections.singletonList(text)).get(0);
+	}
+
+	@Override
+	public List<float[]> embedBatch(List<String> texts) throws TranslateException {
+		if (fallback == null) {
+			for (int attempt = 0; attempt < 2; attempt++) {
+				try {
+					return connection().request(texts);
+				} catch (IOException e) {
+					closeConnection();
+					log.warn("Embedding daemon request failed: " + e.getMessage());
+				}
+			}
+			switchToFallback();
+		}
+		return fallback.embedBatch(texts);
+	}
+
+	@Override
+	public void close() {
+		synchronized (opened) {
+			for (Connection connection : opened) {
+				connection.close();
+			}
+			opened.clear();
+		}
+		if (fallback != null) {
+			fallback.close();
+		}
+	}
+
+	private Connection connection() throws IOException {
+		Connection connection = connections.get();
+		if (connection == null) {
+			connection = Connection.open(address);
+			connections.set(connection);
+			opened.add(connection);
+		}
+		return connection;
+	}
+
+	private void closeConnection() {
+		Connection connection = connections.get();
+		if (connection != null) {
+			connection.close();
+			opened.remove(connection);
+			connections.remove();
+		}
+	}
+
+	private synchronized void switchToFallback() throws TranslateException {
+		if (fallback != null) return;
+		log.warn("Embedding daemon unavailable, falling back to in-process inference");
+		try {
+			fallback = EmbeddingBackends.create(ConfigReader.get("embeddingBackend", EmbeddingBackends.PYTORCH));
+		} catch (Exception e) {
+			throw new TranslateException("Embedding daemon unavailable and in-process model failed to load", e);
+		}
+	}
+
+	private static void startDaemon() throws IOException {
+		File logFile = new File("test-output/embedding-daemon.log");
+		logFile.getParentFile().mkdirs();
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<String> command = new ArrayList<>();
+		command.add(java);
+		// pass on -D overrides (backend, model path, socket, ...) which ConfigReader reads from system properties
+		for (String key : new String[]{"embeddingBackend", "embeddingModelName", "embeddingModelPath", "onnxModelPath",
+				"onnxModelFile", "embeddingDaemonSocket", "embeddingDaemonPort", "embeddingDaemonIdleMinutes"}) {
+			if (System.getProperty(key) != null) {
+				command.add("-D" + key + "=" + System.getProperty(key));
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(EmbeddingServer.class.getName());
+		new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+				.start();
+		log.info("Started embedding daemon, output in " + logFile.getPath());
+	}
+
+	/**
+	 * Connection of one thread to the daemon
+	 */
+	private static class Connection {
+		private final SocketChannel channel;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+		}
+
+		/**
+		 * To connect and check that the daemon serves the protocol version and model of this JVM
+		 */
+		static Connection open(SocketAddress address) throws IOException {
+			Connection connection = new Connection(SocketChannel.open(address));
+			try {
+				connection.hello();
+				return connection;
+			} catch (IOException e) {
+				connection.close();
+				throw e;
+			}
+		}
+
+		private void hello() throws IOException {
+			out.writeInt(EmbeddingServer.HELLO);
+			out.flush();
+			int version;
+			String identity;
+			try {
+				if (in.readInt() != EmbeddingServer.STATUS_OK) {
+					throw new IOException("daemon rejected the hello");
+				}
+				version = in.readInt();
+				identity = in.readUTF();
+			} catch (EOFException e) {
+				throw new IOException("daemon closed the connection on hello (older protocol)");
+			}
+			if (version != EmbeddingServer.PROTOCOL_VERSION) {
+				throw new IOException("daemon speaks protocol " + version + ", expected " + EmbeddingServer.PROTOCOL_VERSION);
+			}
+			String expected = EmbeddingServer.identity();
+			if (!expected.equals(identity)) {
+				throw new IOException("daemon serves '" + identity + "', expected '" + expected + "'");
+			}
+		}
+
+		List<float[]> request(List<String> texts) throws IOException, TranslateException {
+			out.writeInt(EmbeddingServer.MAGIC);
+			out.writeInt(texts.size());
+			for (String text : texts) {
+				byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.flush();
+
+			if (in.readInt() != EmbeddingServer.STATUS_OK) {
+				byte[] message = new byte[in.readInt()];
+				in.readFully(message);
+				throw new TranslateException("Embedding daemon error: " + new String(message, StandardCharsets.UTF_8));
+			}
+			int count = in.readInt();
+			int dimension = in.readInt();
+			List<float[]> embeddings = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				float[] embedding = new float[dimension];
+				for (int j = 0; j < dimension; j++) {
+					embedding[j] = in.readFloat();
+				}
+				embeddings.add(embedding);
+			}
+			return embeddings;
+		}
+
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// already gone
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ai.djl.ModelException;
+
+/**
+ * Routes a language (TestData.lang) to an embedding model.
+ * <p>
+ * embeddingModel.&lt;LANG&gt; names the model of a language; languages without an entry use the default
+ * backend of {@link EmbeddingBackends}. A value is a DJL model zoo name or a local model
+ * directory. Each model is loaded once, on first use, and all of them go through the same DJL text
+ * embedding translator (tokenizer + mean pooling) and share one {@link CachingEmbeddingBackend} cache.
+ * </p>
+ */
+public class EmbeddingRegistry {
+
+	private static final Logger log = LogManager.getLogger(EmbeddingRegistry.class);
+
+	private static final String DEFAULT = "";
+
+	// model name -> loaded backend
+	private static final Map<String, EmbeddingBackend> models = new ConcurrentHashMap<>();
+
+	/**
+	 * To get the backend of the language, e.g. "EN", "AR"; null or unknown languages get the default model
+	 *
+	 * @param lang
+	 * @return EmbeddingBackend
+	 */
+	public static EmbeddingBackend forLanguage(String lang) throws IOException, ModelException {
+		return forModel(modelFor(lang));
+	}
+
+	private static String modelFor(String route) {
+		if (route == null || route.isEmpty()) return DEFAULT;
+		String model = ConfigReader.get("embeddingModel." + route.toUpperCase(), DEFAULT);
+		// the default model name is served by the default backend (daemon, onnx, ...)
+		return model.equals(ConfigReader.get("embeddingModelName", "sentence-transformers/all-MiniLM-L6-v2")) ? DEFAULT : model;
+	}
+
+	private static EmbeddingBackend forModel(String model) throws IOException, ModelException {
+		EmbeddingBackend backend = models.get(model);
+		if (backend != null) return backend;
+
+		synchronized (EmbeddingRegistry.class) {
+			backend = models.get(model);
+			if (backend == null) {
+				backend = new CachingEmbeddingBackend(DEFAULT.equals(model) ? EmbeddingBackends.get() : load(model));
+				models.put(model, backend);
+			}
+			return backend;
+		}
+	}
+
+	private static EmbeddingBackend load(String model) throws IOException, ModelException {
+		long start = System.nanoTime();
+		Path directory = Paths.get(model);
+		EmbeddingBackend backend = Files.isDirectory(directory)
+				? DjlEmbeddingBackend.fromDirectory(model, "PyTorch", directory, null)
+				: DjlEmbeddingBackend.fromZoo(model, "PyTorch", model);
+		log.info("Embedding model '" + model + "' loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		return backend;
+	}
+}
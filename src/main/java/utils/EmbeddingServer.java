@@ -0,0 +1,235 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Local embedding daemon: one warm model shared by all test JVMs of the machine (Surefire forks, shards).
+ * <p>
+ * Listens on the Unix domain socket embeddingDaemonSocket when set, otherwise on loopback port
+ * embeddingDaemonPort, and exits after embeddingDaemonIdleMinutes without requests. Started on demand by
+ * {@link EmbeddingClient}; a second daemon that cannot bind exits, so concurrent starts are harmless.
+ * </p>
+ * Protocol (big-endian, one request/response at a time per connection); clients send a hello first and only
+ * use a daemon which answers with their protocol version and model identity:
+ * <pre>
+ * hello:    int HELLO
+ * response: int STATUS_OK, int PROTOCOL_VERSION, modified UTF-8 identity (backend:model)
+ * request:  int MAGIC, int count, count x (int length, length bytes UTF-8)
+ * response: int STATUS_OK, int count, int dimension, count x dimension floats
+ *           int STATUS_ERROR, int length, length bytes UTF-8 message
+ * </pre>
+ */
+public class EmbeddingServer {
+
+	private static final Logger log = LogManager.getLogger(EmbeddingServer.class);
+
+	static final int MAGIC = 0x454D4231; // "EMB1"
+	static final int HELLO = 0x454D4248; // "EMBH"
+	static final int PROTOCOL_VERSION = 1;
+	static final int STATUS_OK = 0;
+	static final int STATUS_ERROR = 1;
+	static final int MAX_TEXTS = 1024;
+	static final int MAX_TEXT_BYTES = 1 << 20;
+
+	private static final AtomicLong lastRequest = new AtomicLong(System.currentTimeMillis());
+
+	public static void main(String[] args) throws Exception {
+		SocketAddress address = address();
+		ServerSocketChannel server;
+		try {
+			server = open(address);
+		} catch (IOException e) {
+			log.info("Embedding daemon not started, " + address + " is in use: " + e.getMessage());
+			return;
+		}
+
+		EmbeddingBackend backend = EmbeddingBackends.create(ConfigReader.get("embeddingBackend", EmbeddingBackends.PYTORCH));
+		String identity = identity();
+		log.info("Embedding daemon '" + identity + "' listening on " + address);
+
+		ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "embedding-daemon");
+			thread.setDaemon(true);
+			return thread;
+		});
+		startIdleWatch(server, address);
+
+		try {
+			while (server.isOpen()) {
+				SocketChannel channel = server.accept();
+				workers.submit(() -> serve(channel, backend, identity));
+			}
+		} catch (IOException e) {
+			// closed by the idle watch
+		} finally {
+			backend.close();
+			if (address instanceof UnixDomainSocketAddress) {
+				Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+			}
+			log.info("Embedding daemon stopped");
+		}
+	}
+
+	/**
+	 * To get the address of the daemon from config (shared by server and client)
+	 *
+	 * @return Unix domain socket address or loopback address
+	 */
+	static SocketAddress address() {
+		String socket = ConfigReader.get("embeddingDaemonSocket", "");
+		if (!socket.isEmpty()) {
+			return UnixDomainSocketAddress.of(socket);
+		}
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), ConfigReader.getInt("embeddingDaemonPort", 47120));
+	}
+
+	/**
+	 * To get the backend and model selected in config, which a daemon must serve to be used (shared by server
+	 * and client)
+	 *
+	 * @return String, e.g. "pytorch:sentence-transformers/all-MiniLM-L6-v2"
+	 */
+	static String identity() {
+		String backend = ConfigReader.get("embeddingBackend", EmbeddingBackends.PYTORCH).toLowerCase();
+		switch (backend) {
+		case EmbeddingBackends.PYTORCH:
+			String modelPath = ConfigReader.get("embeddingModelPath", "");
+			return backend + ":" + (modelPath.isEmpty()
+					? ConfigReader.get("embeddingModelName", "sentence-transformers/all-MiniLM-L6-v2") : modelPath);
+		case EmbeddingBackends.ONNX:
+			return backend + ":" + ConfigReader.get("onnxModelPath", "models/all-MiniLM-L6-v2-onnx") + "/"
+					+ ConfigReader.get("onnxModelFile", "model_quantized");
+		default:
+			return backend;
+		}
+	}
+
+	private static ServerSocketChannel open(SocketAddress address) throws IOException {
+		ServerSocketChannel server;
+		if (address instanceof UnixDomainSocketAddress) {
+			Path path = ((UnixDomainSocketAddress) address).getPath();
+			if (Files.exists(path) && EmbeddingClient.isReachable(address)) {
+				throw new IOException("another daemon answers on " + path);
+			}
+			Files.deleteIfExists(path); // left over by a daemon that was killed
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		} else {
+			server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+		}
+		server.bind(address);
+		return server;
+	}
+
+	private static void serve(SocketChannel channel, EmbeddingBackend backend, String identity) {
+		try (channel;
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+			while (true) {
+				int header;
+				try {
+					header = in.readInt();
+				} catch (EOFException e) {
+					return; // client closed the connection
+				}
+				if (header == HELLO) {
+					out.writeInt(STATUS_OK);
+					out.writeInt(PROTOCOL_VERSION);
+					out.writeUTF(identity);
+					out.flush();
+					continue;
+				}
+				if (header != MAGIC) {
+					throw new IOException("Bad request header");
+				}
+				List<String> texts = readRequest(in);
+				lastRequest.set(System.currentTimeMillis());
+				try {
+					writeEmbeddings(out, backend.embedBatch(texts));
+				} catch (Exception e) {
+					byte[] message = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+					out.writeInt(STATUS_ERROR);
+					out.writeInt(message.length);
+					out.write(message);
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			log.warn("Embedding daemon connection failed: " + e.getMessage());
+		}
+	}
+
+	private static List<String> readRequest(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > MAX_TEXTS) {
+			throw new IOException("Bad text count " + count);
+		}
+		List<String> texts = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int length = in.readInt();
+			if (length < 0 || length > MAX_TEXT_BYTES) {
+				throw new IOException("Bad text length " + length);
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			texts.add(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return texts;
+	}
+
+	private static void writeEmbeddings(DataOutputStream out, List<float[]> embeddings) throws IOException {
+		int dimension = embeddings.isEmpty() ? 0 : embeddings.get(0).length;
+		out.writeInt(STATUS_OK);
+		out.writeInt(embeddings.size());
+		out.writeInt(dimension);
+		for (float[] embedding : embeddings) {
+			for (int i = 0; i < dimension; i++) {
+				out.writeFloat(embedding[i]);
+			}
+		}
+	}
+
+	private static void startIdleWatch(ServerSocketChannel server, SocketAddress address) {
+		long idleMillis = ConfigReader.getInt("embeddingDaemonIdleMinutes", 10) * 60_000L;
+		Thread watch = new Thread(() -> {
+			while (System.currentTimeMillis() - lastRequest.get() < idleMillis) {
+				try {
+					Thread.sleep(5000);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			log.info("Embedding daemon idle on " + address + ", shutting down");
+			try {
+				server.close();
+			} catch (IOException e) {
+				// exiting anyway
+			}
+		}, "embedding-daemon-idle");
+		watch.setDaemon(true);
+		watch.start();
+	}
+}
@@ -28,7 +28,7 @@ public class JsonUtils {
 	}
 	
 	/**
-	 * To get all ui questions
+	 * To get all ui questions of this shard (see ShardUtils)
 	 * 
 	 * @param fileName
 	 * @return
@@ -38,7 +38,7 @@ public class JsonUtils {
             Gson gson = new Gson();
             TestDataContainer container = gson.fromJson(new FileReader(fileName), TestDataContainer.class);
             if (container != null && container.getUi() != null) {
-                return container.getUi();
+                return ShardUtils.filter(container.getUi());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -70,7 +70,7 @@ public class JsonUtils {
 	}
 	
 	/**
-	 * To get all security questions
+	 * To get all security questions of this shard (see ShardUtils)
 	 * 
 	 * @param fileName
 	 * @return
@@ -80,7 +80,7 @@ public class JsonUtils {
             Gson gson = new Gson();
             TestDataContainer container = gson.fromJson(new FileReader(fileName), TestDataContainer.class);
             if (container != null && container.getSecurityTests() != null) {
-                return container.getSecurityTests();
+                return ShardUtils.filter(container.getSecurityTests());
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -110,4 +110,46 @@ public class JsonUtils {
 	    }
 	    return null;
 	}
+
+	/**
+	 * To get all api questions of this shard (see ShardUtils)
+	 * 
+	 * @param fileName
+	 * @return
+	 */
+    public static List<TestData> getAllApiQuestions(String fileName) {
+        try {
+            Gson gson = new Gson();
+            TestDataContainer container = gson.fromJson(new FileReader(fileName), TestDataContainer.class);
+            if (container != null && container.getApi() != null) {
+                return ShardUtils.filter(container.getApi());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+	/**
+	 * To get the multi-turn conversation details based on id
+	 * 
+	 * @param fileName
+	 * @param id
+	 * @return
+	 */
+	public static Conversation getConversationById(String fileName, String id) {
+	    try {
+	        Gson gson = new Gson();
+	        TestDataContainer container = gson.fromJson(new FileReader(fileName), TestDataContainer.class);
+	        if (container != null && container.getConversations() != null) {
+	            return container.getConversations().stream()
+	                    .filter(c -> c.getId().equals(id))
+	                    .findFirst()
+	                    .orElse(null);
+	        }
+	    } catch (Exception e) {
+	        e.printStackTrace();
+	    }
+	    return null;
+	}
 }
@@ -12,8 +12,11 @@ import org.testng.Reporter;
 public class Log {
     private static final Logger log = LogManager.getLogger(Log.class);
 
+    /** Lock for every change to the ExtentReports tree (nodes, logs, media) and for flush, which walks it */
+    public static final Object REPORT_LOCK = new Object();
+
     /** Optional: ExtentTest instance for reporting to ExtentReports */
-    private static ThreadLocal<ExtentTest> extentTest = new ThreadLocal<>();
+    private static final ThreadLocal<ExtentTest> extentTest = new ThreadLocal<>();
 
     /**
      * Set ExtentTest instance for the current thread/test
@@ -22,6 +25,13 @@ public class Log {
         extentTest.set(test);
     }
 
+    /**
+     * Clear ExtentTest of the current thread once its test is finished
+     */
+    public static void clearExtentTest() {
+        extentTest.remove();
+    }
+
     /**
      * Get current thread's ExtentTest
      */
@@ -63,13 +73,15 @@ public class Log {
 		// ===== ExtentReports =====
 		ExtentTest test = getTest();
 		if (test != null) {
-			if (status == Status.INFO) {
-				test.log(Status.INFO, message);
-			} else {
-				if (color != null) {
-					test.log(status, MarkupHelper.createLabel(message, color));
+			synchronized (REPORT_LOCK) {
+				if (status == Status.INFO) {
+					test.log(Status.INFO, message);
 				} else {
-					test.log(status, message);
+					if (color != null) {
+						test.log(status, MarkupHelper.createLabel(message, color));
+					} else {
+						test.log(status, message);
+					}
 				}
 			}
 		}
@@ -149,7 +161,11 @@ public class Log {
     public static void errorEvent(String message, Throwable throwable) {
     	log.error(message, throwable);
         ExtentTest test = getTest();
-        if (test != null) test.fail(throwable);
+        if (test != null) {
+            synchronized (REPORT_LOCK) {
+                test.fail(throwable);
+            }
+        }
         logMessage(message, Status.FAIL, ExtentColor.RED, true, false, true);
     }
     
@@ -0,0 +1,300 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process metrics registry (counters, gauges, histograms) exported in the OpenMetrics / Prometheus
+ * text format.
+ * <p>
+ * Metrics are created on first use and identified by name plus label pairs, e.g.
+ * <pre>
+ * Metrics.increment("uask_api_requests", "API requests by endpoint and status", "endpoint", "/api/chat/completed", "status", "200");
+ * Metrics.observe("uask_api_request_seconds", "API request latency", 1.7, "endpoint", "/api/chat/completed");
+ * </pre>
+ * The registry is written to metricsFile at suite end; with metricsPort &gt; 0 it is also served on
+ * http://127.0.0.1:&lt;port&gt;/metrics while the suite runs, for scraping during long runs.
+ * </p>
+ */
+public class Metrics {
+
+	private static final Logger log = LogManager.getLogger(Metrics.class);
+
+	public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+	/** default histogram buckets, in seconds */
+	public static final double[] LATENCY_BUCKETS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 20, 30, 60, 120};
+	/** histogram buckets for scores between 0 and 1 */
+	public static final double[] SCORE_BUCKETS = {0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.75, 0.8, 0.85, 0.9, 0.95, 1};
+
+	private static final Map<String, Family> families = new ConcurrentHashMap<>();
+	private static HttpServer server;
+
+	private enum Type {
+		COUNTER, GAUGE, HISTOGRAM
+	}
+
+	/**
+	 * To add 1 to a counter
+	 *
+	 * @param name
+	 * 		- metric name without the _total suffix
+	 * @param help
+	 * 		- description, used when the metric is created
+	 * @param labels
+	 * 		- label name / value pairs
+	 */
+	public static void increment(String name, String help, String... labels) {
+		add(name, help, 1, labels);
+	}
+
+	/**
+	 * To add a non-negative amount to a counter
+	 *
+	 * @param name
+	 * 		- metric name without the _total suffix
+	 * @param help
+	 * @param amount
+	 * @param labels
+	 * 		- label name / value pairs
+	 */
+	public static void add(String name, String help, double amount, String... labels) {
+		family(name, help, Type.COUNTER, null).series(labels).sum.add(amount);
+	}
+
+	/**
+	 * To set a gauge
+	 *
+	 * @param name
+	 * @param help
+	 * @param value
+	 * @param labels
+	 * 		- label name / value pairs
+	 */
+	public static void set(String name, String help, double value, String... labels) {
+		family(name, help, Type.GAUGE, null).series(labels).gauge.set(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * To record a value in a histogram with the default latency buckets (seconds)
+	 *
+	 * @param name
+	 * @param help
+	 * @param value
+	 * @param labels
+	 * 		- label name / value pairs
+	 */
+	public static void observe(String name, String help, double value, String... labels) {
+		observe(name, help, LATENCY_BUCKETS, value, labels);
+	}
+
+	/**
+	 * To record a value in a histogram
+	 *
+	 * @param name
+	 * @param help
+	 * @param buckets
+	 * 		- upper bounds in ascending order, used when the metric is created
+	 * @param value
+	 * @param labels
+	 * 		- label name / value pairs
+	 */
+	public static void observe(String name, String help, double[] buckets, double value, String... labels) {
+		Family family = family(name, help, Type.HISTOGRAM, buckets);
+		Series series = family.series(labels);
+		int bucket = Arrays.binarySearch(family.buckets, value);
+		if (bucket < 0) bucket = -bucket - 1; // first bound >= value, buckets.length for +Inf
+		series.buckets[bucket].increment();
+		series.count.increment();
+		series.sum.add(value);
+	}
+
+	/**
+	 * To render all metrics in the OpenMetrics text format
+	 *
+	 * @return String ending with "# EOF"
+	 */
+	public static String scrape() {
+		StringBuilder sb = new StringBuilder();
+		new TreeMap<>(families).forEach((name, family) -> family.render(sb));
+		sb.append("# EOF\n");
+		return sb.toString();
+	}
+
+	/**
+	 * To write the metrics to metricsFile (test-output/metrics.prom by default)
+	 */
+	public static void write() {
+		Path file = Paths.get(ConfigReader.get("metricsFile", "test-output/metrics.prom"));
+		try {
+			if (file.getParent() != null) Files.createDirectories(file.getParent());
+			Files.write(file, scrape().getBytes(StandardCharsets.UTF_8));
+			log.info("Metrics written to " + file.toAbsolutePath());
+		} catch (IOException e) {
+			log.warn("Could not write metrics to " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To serve /metrics on 127.0.0.1:metricsPort, nothing when metricsPort is 0
+	 */
+	public static synchronized void startServer() {
+		int port = ConfigReader.getInt("metricsPort", 0);
+		if (server != null || port <= 0) return;
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			server.createContext("/metrics", exchange -> {
+				byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			});
+			server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "metrics-server");
+				thread.setDaemon(true);
+				return thread;
+			}));
+			server.start();
+			log.info("Metrics served on http://127.0.0.1:" + port + "/metrics");
+		} catch (IOException e) {
+			server = null;
+			log.warn("Could not serve metrics on port " + port + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To stop serving /metrics
+	 */
+	public static synchronized void stopServer() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	private static Family family(String name, String help, Type type, double[] buckets) {
+		Family family = families.computeIfAbsent(name, key -> new Family(name, help, type, buckets));
+		if (family.type != type) {
+			throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+		}
+		return family;
+	}
+
+	/**
+	 * All series of one metric name
+	 */
+	private static class Family {
+		private final String name;
+		private final String help;
+		private final Type type;
+		private final double[] buckets;
+		private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+		Family(String name, String help, Type type, double[] buckets) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.buckets = buckets != null ? buckets.clone() : null;
+		}
+
+		Series series(String... labels) {
+			if (labels.length % 2 != 0) {
+				throw new IllegalArgumentException("Labels of " + name + " must be name / value pairs");
+			}
+			return series.computeIfAbsent(labelString(labels), key -> new Series(buckets != null ? buckets.length + 1 : 0));
+		}
+
+		void render(StringBuilder sb) {
+			sb.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase()).append('\n');
+			sb.append("# HELP ").append(name).append(' ').append(escape(help)).append('\n');
+			new TreeMap<>(series).forEach((labels, value) -> {
+				switch (type) {
+				case COUNTER:
+					sample(sb, name + "_total", labels, value.sum.sum());
+					break;
+				case GAUGE:
+					sample(sb, name, labels, Double.longBitsToDouble(value.gauge.get()));
+					break;
+				case HISTOGRAM:
+					long cumulative = 0;
+					for (int i = 0; i <= buckets.length; i++) {
+						cumulative += value.buckets[i].sum();
+						String le = i < buckets.length ? Double.toString(buckets[i]) : "+Inf";
+						sample(sb, name + "_bucket", join(labels, "le=\"" + le + "\""), cumulative);
+					}
+					sample(sb, name + "_sum", labels, value.sum.sum());
+					sample(sb, name + "_count", labels, value.count.sum());
+					break;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Values of one label combination
+	 */
+	private static class Series {
+		private final DoubleAdder sum = new DoubleAdder();
+		private final LongAdder count = new LongAdder();
+		private final AtomicLong gauge = new AtomicLong(Double.doubleToLongBits(0));
+		private final LongAdder[] buckets;
+
+		Series(int bucketCount) {
+			buckets = new LongAdder[bucketCount];
+			for (int i = 0; i < bucketCount; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+	}
+
+	private static void sample(StringBuilder sb, String name, String labels, double value) {
+		sb.append(name);
+		if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+		sb.append(' ').append(format(value)).append('\n');
+	}
+
+	private static String labelString(String... labels) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2) {
+			if (sb.length() > 0) sb.append(',');
+			sb.append(labels[i]).append("=\"").append(escape(labels[i + 1] != null ? labels[i + 1] : "")).append('"');
+		}
+		return sb.toString();
+	}
+
+	private static String join(String labels, String label) {
+		return labels.isEmpty() ? label : labels + "," + label;
+	}
+
+	private static String format(double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,63 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Loads the embedding model and runs a few inferences on a background thread at suite start, so engine
+ * discovery, native library extraction, model load and JIT warm-up overlap with browser launch and login
+ * instead of landing in the first timed comparison.
+ * <p>
+ * modelWarmUp = false disables it, modelWarmUpInferences sets the number of warm-up batches.
+ * </p>
+ */
+public class ModelWarmUp {
+
+	private static final Logger log = LogManager.getLogger(ModelWarmUp.class);
+
+	private static volatile CompletableFuture<Void> warmUp;
+
+	/**
+	 * To start the warm-up in the background, only the first call has an effect
+	 */
+	public static synchronized void start() {
+		if (warmUp != null || !ConfigReader.getBoolean("modelWarmUp", true)) return;
+
+		warmUp = CompletableFuture.runAsync(() -> {
+			try {
+				long start = System.nanoTime();
+				EmbeddingBackend backend = EmbeddingBackends.get();
+				StartupTimings.record("model load", start);
+
+				start = System.nanoTime();
+				int inferences = ConfigReader.getInt("modelWarmUpInferences", 3);
+				for (int i = 0; i < inferences; i++) {
+					backend.embedBatch(Arrays.asList("How do I renew my visa?", "كيف أجدد تأشيرتي؟"));
+				}
+				StartupTimings.record("model warm-up", start);
+			} catch (Exception e) {
+				// the first real comparison loads the model again and reports the error
+				log.warn("Model warm-up failed: " + e.getMessage());
+			}
+		}, runnable -> {
+			Thread thread = new Thread(runnable, "model-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * To block until the warm-up is done, immediately returns when it finished or never started
+	 */
+	public static void awaitReady() {
+		CompletableFuture<Void> current = warmUp;
+		if (current == null || current.isDone()) return;
+
+		long start = System.nanoTime();
+		current.join();
+		StartupTimings.record("scorer blocked on warm-up", start);
+	}
+}
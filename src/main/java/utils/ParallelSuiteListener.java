@@ -0,0 +1,41 @@
+package utils;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IAlterSuiteListener;
+import org.testng.xml.XmlSuite;
+
+public class ParallelSuiteListener implements IAlterSuiteListener {
+
+	private static final Logger log = LogManager.getLogger(ParallelSuiteListener.class);
+
+	/**
+	 * To apply the configured parallel mode (parallelMode) and thread count (threadCount) to the suites
+	 * before they run. threadCount = auto means one thread per available core.
+	 *
+	 * @param suites
+	 * 		- suites parsed from testng.xml
+	 */
+	@Override
+	public void alter(List<XmlSuite> suites) {
+		String parallelMode = ConfigReader.get("parallelMode", "");
+		String threadCount = ConfigReader.get("threadCount", "");
+
+		for (XmlSuite suite : suites) {
+			if (!parallelMode.isEmpty()) {
+				suite.setParallel(XmlSuite.ParallelMode.getValidParallel(parallelMode));
+			}
+			if (!threadCount.isEmpty()) {
+				int threads = "auto".equalsIgnoreCase(threadCount)
+						? Runtime.getRuntime().availableProcessors()
+						: ConfigReader.getInt("threadCount", suite.getThreadCount());
+				// <test> tags inherit it unless they set their own thread-count
+				suite.setThreadCount(threads);
+			}
+			log.info("Suite '" + suite.getName() + "' runs parallel=" + suite.getParallel()
+					+ " with thread-count=" + suite.getThreadCount());
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import com.aventstack.extentreports.ExtentTest;
+
+/**
+ * Front-end performance snapshots of the chat page: Navigation Timing, LCP, long tasks and layout shifts from
+ * PerformanceObserver, plus JS heap, layout and style recalculation counts from the CDP Performance domain.
+ * <p>
+ * {@link #enable(WebDriver)} is called by DriverFactory for every device profile (desktop and the mobile
+ * emulations) when perfCapture = true; it installs the observers before any page script runs. Each
+ * {@link #capture} is attached to the report node of the test and compared with the budgets
+ * perfBudget.&lt;metric&gt; (e.g. perfBudget.lcpMs = 4000). A breached budget is a warning, or fails the test
+ * when perfBudgetFail = true.
+ * </p>
+ */
+public class PerformanceCapture {
+
+	private static final Logger log = LogManager.getLogger(PerformanceCapture.class);
+
+	private static final boolean ENABLED = ConfigReader.getBoolean("perfCapture", false);
+	private static final boolean FAIL_ON_BUDGET = ConfigReader.getBoolean("perfBudgetFail", false);
+
+	private static final String OBSERVER_SCRIPT =
+			"(function() {" +
+			"  if (window.__uaskPerf) return;" +
+			"  var p = window.__uaskPerf = {lcp: 0, longTasks: 0, longTaskMs: 0, cls: 0};" +
+			"  function observe(type, fn) {" +
+			"    try { new PerformanceObserver(function(list) { list.getEntries().forEach(fn); }).observe({type: type, buffered: true}); } catch (e) {}" +
+			"  }" +
+			"  observe('largest-contentful-paint', function(e) { p.lcp = Math.max(p.lcp, e.renderTime || e.loadTime || e.startTime); });" +
+			"  observe('longtask', function(e) { p.longTasks++; p.longTaskMs += e.duration; });" +
+			"  observe('layout-shift', function(e) { if (!e.hadRecentInput) p.cls += e.value; });" +
+			"})();";
+
+	private static final String READ_SCRIPT = OBSERVER_SCRIPT +
+			"var n = performance.getEntriesByType('navigation')[0] || {}, p = window.__uaskPerf;" +
+			"return {ttfbMs: n.responseStart || 0, domContentLoadedMs: n.domContentLoadedEventEnd || 0," +
+			"  loadMs: n.loadEventEnd || 0, lcpMs: p.lcp, longTasks: p.longTasks, longTaskMs: p.longTaskMs, cls: p.cls};";
+
+	// CDP Performance.getMetrics name -> snapshot name and scale
+	private static final String[][] CDP_METRICS = {
+			{"JSHeapUsedSize", "jsHeapUsedMb", String.valueOf(1.0 / (1024 * 1024))},
+			{"LayoutCount", "layoutCount", "1"},
+			{"RecalcStyleCount", "recalcStyleCount", "1"},
+			{"Nodes", "domNodes", "1"},
+			{"TaskDuration", "taskMs", "1000"}};
+
+	/**
+	 * Values of one capture, by metric name
+	 */
+	public static class Snapshot {
+		private final String label;
+		private final Map<String, Double> values = new LinkedHashMap<>();
+
+		Snapshot(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public Double get(String metric) {
+			return values.get(metric);
+		}
+
+		public Map<String, Double> getValues() {
+			return new LinkedHashMap<>(values);
+		}
+
+		@Override
+		public String toString() {
+			return label + " " + values;
+		}
+	}
+
+	/**
+	 * To install the PerformanceObserver script on every new document and enable the CDP Performance domain
+	 *
+	 * @param driver
+	 * 		- freshly created WebDriver, before the first navigation
+	 */
+	public static void enable(WebDriver driver) {
+		if (!ENABLED || !(driver instanceof HasDevTools)) return;
+		try {
+			DevTools devTools = ((HasDevTools) driver).getDevTools();
+			devTools.createSessionIfThereIsNotOne();
+			devTools.send(new Command<Void>("Performance.enable", new HashMap<>()));
+			devTools.send(new Command<Object>("Page.addScriptToEvaluateOnNewDocument", Map.of("source", OBSERVER_SCRIPT),
+					input -> input.read(Json.MAP_TYPE)));
+		} catch (Exception e) {
+			log.warn("Unable to enable performance capture via CDP: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To capture a snapshot, attach it to the report node of the test and check it against the budgets
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @param label
+	 * 		- moment of the capture, e.g. "page load" or "answer 2"
+	 * @return Snapshot, null when capture is disabled or failed
+	 */
+	@SuppressWarnings("unchecked")
+	public static Snapshot capture(WebDriver driver, String label) {
+		if (!ENABLED) return null;
+		Snapshot snapshot = new Snapshot(label);
+		try {
+			Object page = ((JavascriptExecutor) driver).executeScript(READ_SCRIPT);
+			if (page instanceof Map) {
+				((Map<String, Object>) page).forEach((name, value) -> {
+					if (value instanceof Number) snapshot.values.put(name, ((Number) value).doubleValue());
+				});
+			}
+			if (driver instanceof HasDevTools) {
+				readCdpMetrics(((HasDevTools) driver).getDevTools(), snapshot);
+			}
+		} catch (Exception e) {
+			log.warn("Performance capture '" + label + "' failed: " + e.getMessage());
+			return null;
+		}
+
+		for (Map.Entry<String, Double> entry : snapshot.values.entrySet()) {
+			Metrics.observe("uask_frontend_" + entry.getKey(), "Chat page " + entry.getKey() + " per capture",
+					bucketsFor(entry.getKey()), entry.getValue(), "capture", label.startsWith("answer") ? "answer" : label);
+		}
+		report(snapshot);
+		return snapshot;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void readCdpMetrics(DevTools devTools, Snapshot snapshot) {
+		devTools.createSessionIfThereIsNotOne();
+		Map<String, Object> result = devTools.send(new Command<Map<String, Object>>("Performance.getMetrics",
+				new HashMap<>(), input -> input.read(Json.MAP_TYPE)));
+		Object metrics = result != null ? result.get("metrics") : null;
+		if (!(metrics instanceof List)) return;
+
+		Map<String, Double> byName = new HashMap<>();
+		for (Object metric : (List<Object>) metrics) {
+			Map<String, Object> entry = (Map<String, Object>) metric;
+			byName.put((String) entry.get("name"), ((Number) entry.get("value")).doubleValue());
+		}
+		for (String[] mapping : CDP_METRICS) {
+			Double value = byName.get(mapping[0]);
+			if (value != null) snapshot.values.put(mapping[1], value * Double.parseDouble(mapping[2]));
+		}
+	}
+
+	private static void report(Snapshot snapshot) {
+		StringBuilder html = new StringBuilder("<b>Front-end performance: " + snapshot.label + "</b><br>")
+				.append("<table border='1' cellspacing='0' cellpadding='3' style='border-collapse:collapse; font-size:12px;'>")
+				.append("<tr><th>Metric</th><th>Value</th><th>Budget</th></tr>");
+		StringBuilder breaches = new StringBuilder();
+		snapshot.values.forEach((name, value) -> {
+			double budget = ConfigReader.getDouble("perfBudget." + name, Double.NaN);
+			boolean breached = !Double.isNaN(budget) && value > budget;
+			html.append("<tr").append(breached ? " style='color:red'" : "").append("><td>").append(name)
+					.append("</td><td>").append(String.format("%.2f", value))
+					.append("</td><td>").append(Double.isNaN(budget) ? "" : String.format("%.2f", budget)).append("</td></tr>");
+			if (breached) {
+				breaches.append(String.format(" %s=%.2f (budget %.2f)", name, value, budget));
+			}
+		});
+		html.append("</table>");
+
+		ExtentTest test = Log.getTest();
+		if (test != null) {
+			synchronized (Log.REPORT_LOCK) {
+				test.info(html.toString());
+			}
+		}
+		log.info("Front-end performance " + snapshot);
+
+		if (breaches.length() > 0) {
+			String message = "Performance budget exceeded at " + snapshot.label + ":" + breaches;
+			if (FAIL_ON_BUDGET) {
+				Log.fail(message);
+			}
+			Log.warnEvent(message);
+		}
+	}
+
+	private static double[] bucketsFor(String metric) {
+		if (metric.endsWith("Ms")) {
+			return new double[]{50, 100, 250, 500, 1000, 2500, 4000, 8000, 15000, 30000};
+		}
+		if ("cls".equals(metric)) {
+			return new double[]{0.01, 0.05, 0.1, 0.25, 0.5, 1};
+		}
+		return new double[]{10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+	}
+}
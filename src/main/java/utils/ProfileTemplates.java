@@ -0,0 +1,389 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+/**
+ * Warm Chrome user-data-dir templates, one per device, cloned for every new browser (warmProfile = true).
+ * <p>
+ * A template is built once by opening the application in a browser with an empty profile, so its HTTP cache,
+ * compiled JS (code cache), service workers and fonts are on disk; cookies and storage are cleared before it
+ * is closed, so every test still starts logged out. Templates live in warmProfileDir and are rebuilt after
+ * warmProfileMaxAgeHours (a new deployment brings new bundles). Every build is a new version directory
+ * (&lt;device&gt;@&lt;version&gt;), published by atomically replacing the pointer file &lt;device&gt;.current, so a
+ * JVM never clones a template that is being replaced. A JVM holds a shared file lock on each version it clones
+ * from until it exits; old versions are deleted only when no JVM holds that lock. Each browser gets its own clone in a temp
+ * directory: copy-on-write with cp --reflink=auto (Linux) or cp -c (macOS) where the file system supports it,
+ * else a plain copy. Hard links are not used because Chrome rewrites cache index files in place. Clones are
+ * deleted when the browser is released and at suite end.
+ * </p>
+ */
+public class ProfileTemplates {
+
+	private static final Logger log = LogManager.getLogger(ProfileTemplates.class);
+
+	private static final Path TEMPLATE_DIR = Paths.get(ConfigReader.get("warmProfileDir", "target/chrome-profiles"));
+	private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(ConfigReader.getInt("warmProfileMaxAgeHours", 24));
+	// marker of a complete template holding the cold load time, and the file locked by the JVMs using a version
+	private static final String WARM = ".warm";
+	private static final String IN_USE = ".in-use";
+	// Chrome's single-instance locks and our in-use lock, they must not be carried into a clone
+	private static final Set<String> LOCK_FILES = Set.of("SingletonLock", "SingletonSocket", "SingletonCookie", "lockfile", IN_USE);
+	private static final String VERSION_SEPARATOR = "@";
+
+	private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+	private static final Map<WebDriver, Path> clones = new ConcurrentHashMap<>();
+	private static final Map<WebDriver, String> devices = new ConcurrentHashMap<>();
+	private static final Map<String, Long> coldLoadMillis = new ConcurrentHashMap<>();
+	private static final Map<String, long[]> warmLoads = new ConcurrentHashMap<>(); // count, total millis
+	private static final Map<Path, FileLock> versionsInUse = new ConcurrentHashMap<>();
+	private static final Set<String> swept = ConcurrentHashMap.newKeySet();
+
+	private static final AtomicLong cloneMillis = new AtomicLong();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread(ProfileTemplates::cleanUp, "profile-cleanup"));
+	}
+
+	/**
+	 * To check whether browsers start from warm profile clones
+	 *
+	 * @return boolean
+	 */
+	public static boolean isEnabled() {
+		return ConfigReader.getBoolean("warmProfile", false);
+	}
+
+	/**
+	 * To get a fresh clone of the warm template of the device, building the template first if needed
+	 *
+	 * @param device
+	 * 		- device profile the template is built for
+	 * @param options
+	 * 		- ChromeOptions of the device, used to build the template
+	 * @return user-data-dir for a new browser
+	 */
+	public static Path newClone(String device, Supplier<ChromeOptions> options) {
+		Path template = template(device, options);
+		long start = System.nanoTime();
+		try {
+			Path clone = Files.createTempDirectory("uask-profile-" + device + "-");
+			copy(template, clone);
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			cloneMillis.addAndGet(millis);
+			Metrics.observe("uask_profile_clone_seconds", "Time to clone a warm browser profile", millis / 1000.0, "device", device);
+			return clone;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not clone browser profile " + template, e);
+		}
+	}
+
+	/**
+	 * To attach a clone to the browser started with it, so it is deleted on release
+	 *
+	 * @param driver
+	 * @param device
+	 * @param clone
+	 */
+	public static void register(WebDriver driver, String device, Path clone) {
+		clones.put(driver, clone);
+		devices.put(driver, device);
+	}
+
+	/**
+	 * To record the first navigation of a browser, to compare warm clones with the cold template build
+	 *
+	 * @param driver
+	 * @param millis
+	 * 		- time driver.get() took for the application URL
+	 */
+	public static void recordNavigation(WebDriver driver, long millis) {
+		String device = devices.remove(driver);
+		if (device == null) return;
+		long[] loads = warmLoads.computeIfAbsent(device, key -> new long[2]);
+		synchronized (loads) {
+			loads[0]++;
+			loads[1] += millis;
+		}
+	}
+
+	/**
+	 * To delete the profile clone of a browser after it was quit (no-op for browsers without a clone)
+	 *
+	 * @param driver
+	 */
+	public static void release(WebDriver driver) {
+		devices.remove(driver);
+		Path clone = clones.remove(driver);
+		if (clone != null) {
+			delete(clone);
+		}
+	}
+
+	/**
+	 * To delete a clone whose browser could not be started
+	 *
+	 * @param clone
+	 */
+	public static void discard(Path clone) {
+		delete(clone);
+	}
+
+	/**
+	 * To delete all remaining clones (suite end, JVM shutdown)
+	 */
+	public static void cleanUp() {
+		clones.keySet().forEach(ProfileTemplates::release);
+	}
+
+	/**
+	 * To get cold and warm page load per device and the time saved
+	 *
+	 * @return String, one device per line, "disabled" or "none" without warm profiles
+	 */
+	public static String getSummary() {
+		if (!isEnabled()) return "disabled";
+		if (warmLoads.isEmpty()) return "none";
+		StringBuilder sb = new StringBuilder();
+		new TreeMap<>(warmLoads).forEach((device, loads) -> {
+			Long cold = coldLoadMillis.get(device);
+			double warm = loads[0] > 0 ? (double) loads[1] / loads[0] : 0;
+			sb.append(String.format("%n  %-12s browsers=%d cold load=%s warm load=%.0f ms%s", device, loads[0],
+					cold != null ? cold + " ms" : "n/a", warm,
+					cold != null ? String.format(" saved=%.1f s", (cold - warm) * loads[0] / 1000.0) : ""));
+		});
+		sb.append(String.format("%n  cloning took %.1f s in total", cloneMillis.get() / 1000.0));
+		return sb.toString();
+	}
+
+	/**
+	 * Current template version of the device, built once per JVM unless a fresh one is published on disk
+	 */
+	private static Path template(String device, Supplier<ChromeOptions> options) {
+		synchronized (locks.computeIfAbsent(device, key -> new Object())) {
+			Path version = current(device);
+			if (version != null && isFresh(version) && use(version)) {
+				try {
+					// the marker keeps the cold load time measured when the template was built
+					coldLoadMillis.putIfAbsent(device, Long.parseLong(Files.readString(version.resolve(WARM)).trim()));
+				} catch (IOException | NumberFormatException ignored) {
+					// marker without cold load time, nothing to compare with
+				}
+				if (swept.add(device)) sweep(device, version);
+			} else {
+				version = build(device, options.get());
+				sweep(device, version);
+			}
+			return version;
+		}
+	}
+
+	/**
+	 * Version directory the pointer file of the device names, null if there is none
+	 */
+	private static Path current(String device) {
+		try {
+			Path version = TEMPLATE_DIR.resolve(Files.readString(pointer(device)).trim());
+			return Files.isDirectory(version) ? version : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static boolean isFresh(Path version) {
+		File marker = version.resolve(WARM).toFile();
+		return marker.exists() && System.currentTimeMillis() - marker.lastModified() < MAX_AGE_MILLIS;
+	}
+
+	/**
+	 * To take a shared lock on a version for the rest of the run, so no JVM deletes it while it is cloned
+	 *
+	 * @return false if the version was deleted in the meantime
+	 */
+	private static boolean use(Path version) {
+		if (versionsInUse.containsKey(version)) return true;
+		try {
+			FileChannel channel = FileChannel.open(version.resolve(IN_USE), StandardOpenOption.READ);
+			FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+			if (!Files.exists(version.resolve(WARM))) { // deleted by a sweep before we got the lock
+				channel.close();
+				return false;
+			}
+			versionsInUse.put(version, lock);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * To build a new template version in a temp directory next to the others, then publish it by replacing the
+	 * pointer file, so a parallel JVM never clones a half-written or replaced template
+	 */
+	private static Path build(String device, ChromeOptions options) {
+		long start = System.nanoTime();
+		Path building;
+		try {
+			Files.createDirectories(TEMPLATE_DIR);
+			building = Files.createTempDirectory(TEMPLATE_DIR, device + "-building-");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not create browser profile directory in " + TEMPLATE_DIR, e);
+		}
+
+		options.addArguments("--user-data-dir=" + building.toAbsolutePath());
+		WebDriver driver = new ChromeDriver(options);
+		try {
+			long navigation = System.nanoTime();
+			driver.get(ConfigReader.get("url"));
+			long coldMillis = (System.nanoTime() - navigation) / 1_000_000;
+			coldLoadMillis.put(device, coldMillis);
+			Metrics.set("uask_profile_cold_load_seconds", "First page load with an empty browser profile", coldMillis / 1000.0, "device", device);
+
+			// second visit so that the code cache holds the compiled bundles
+			driver.navigate().refresh();
+			driver.manage().deleteAllCookies();
+			((ChromeDriver) driver).executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+		} finally {
+			driver.quit(); // flushes the caches to disk
+		}
+
+		// a version directory name is unique, so the move never replaces a template another JVM may be cloning
+		Path version = TEMPLATE_DIR.resolve(device + VERSION_SEPARATOR + System.currentTimeMillis() + "-"
+				+ building.getFileName().toString().substring((device + "-building-").length()));
+		try {
+			Files.writeString(building.resolve(WARM), String.valueOf(coldLoadMillis.get(device)));
+			// locked before it gets a version name, so no sweep can take it in between
+			FileChannel channel = FileChannel.open(building.resolve(IN_USE), StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			versionsInUse.put(version, channel.lock(0, Long.MAX_VALUE, true));
+			Files.move(building, version, StandardCopyOption.ATOMIC_MOVE);
+			Path pointer = Files.createTempFile(TEMPLATE_DIR, device + "-pointer-", ".tmp");
+			Files.writeString(pointer, version.getFileName().toString());
+			Files.move(pointer, pointer(device), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			delete(building);
+			throw new UncheckedIOException("Could not publish browser profile template " + version, e);
+		}
+		StartupTimings.record("warm profile template (" + device + ")", start);
+		log.info("Warm profile template for " + device + " built in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + version);
+		return version;
+	}
+
+	/**
+	 * To delete the versions of the device other than the current one which no JVM holds a lock on, and
+	 * builds abandoned for longer than warmProfileMaxAgeHours
+	 */
+	private static void sweep(String device, Path current) {
+		List<Path> candidates;
+		try (Stream<Path> paths = Files.list(TEMPLATE_DIR)) {
+			candidates = paths.filter(path -> !path.equals(current)).toList();
+		} catch (IOException e) {
+			return;
+		}
+		for (Path path : candidates) {
+			String name = path.getFileName().toString();
+			if (name.startsWith(device + VERSION_SEPARATOR) && Files.isDirectory(path)) {
+				deleteIfUnused(path);
+			} else if (name.startsWith(device + "-building-")
+					&& System.currentTimeMillis() - path.toFile().lastModified() > MAX_AGE_MILLIS) {
+				delete(path);
+			}
+		}
+	}
+
+	private static void deleteIfUnused(Path version) {
+		if (versionsInUse.containsKey(version)) return;
+		try (FileChannel channel = FileChannel.open(version.resolve(IN_USE), StandardOpenOption.WRITE)) {
+			FileLock lock = channel.tryLock();
+			if (lock == null) return; // cloned from by another JVM
+			// without the marker a JVM that locks it after us sees the version as gone
+			Files.deleteIfExists(version.resolve(WARM));
+			delete(version);
+			log.info("Deleted unused warm profile template " + version);
+		} catch (OverlappingFileLockException e) {
+			// locked by this JVM
+		} catch (IOException e) {
+			// deleted by another JVM or not a complete version
+		}
+	}
+
+	private static Path pointer(String device) {
+		return TEMPLATE_DIR.resolve(device + ".current");
+	}
+
+	/**
+	 * To copy the template, copy-on-write when the OS and file system support it
+	 */
+	private static void copy(Path template, Path clone) throws IOException {
+		String os = System.getProperty("os.name", "").toLowerCase();
+		String[] command = os.contains("linux") ? new String[]{"cp", "-a", "--reflink=auto", template + "/.", clone.toString()}
+				: os.contains("mac") ? new String[]{"cp", "-c", "-R", template + "/.", clone.toString()} : null;
+		if (command != null) {
+			try {
+				Process process = new ProcessBuilder(command).redirectErrorStream(true)
+						.redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+				if (process.waitFor() == 0) {
+					removeLocks(clone);
+					return;
+				}
+			} catch (IOException e) {
+				log.debug("cp not available, copying the profile in Java: " + e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while cloning " + template, e);
+			}
+		}
+
+		try (Stream<Path> paths = Files.walk(template)) {
+			for (Path source : (Iterable<Path>) paths::iterator) {
+				Path target = clone.resolve(template.relativize(source).toString());
+				if (LOCK_FILES.contains(source.getFileName().toString())) continue;
+				if (Files.isDirectory(source)) {
+					Files.createDirectories(target);
+				} else {
+					Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+				}
+			}
+		}
+	}
+
+	private static void removeLocks(Path clone) throws IOException {
+		for (String lock : LOCK_FILES) {
+			Files.deleteIfExists(clone.resolve(lock));
+		}
+	}
+
+	private static void delete(Path directory) {
+		if (!Files.exists(directory)) return;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		} catch (IOException e) {
+			log.warn("Could not delete " + directory + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,527 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest neighbour index (HNSW) over response embeddings.
+ * <p>
+ * Vectors are normalized on insert (cosine similarity = dot product) and kept off-heap in a memory-mapped
+ * file (vectors.bin) which grows as answers are added; the layered neighbour graph and the labels stay on
+ * the heap and are written to graph.bin by {@link #save()}. Inserts are incremental, queries see every
+ * answer inserted before them. Files live in one directory, reopened with {@link #open(Path, int)}.
+ * </p>
+ * Example:
+ * <pre>
+ * try (ResponseIndex index = ResponseIndex.open(Paths.get("test-output/response-index"), 384)) {
+ *     index.add("UI_EN_01", embedding);
+ *     List&lt;ResponseIndex.Neighbor&gt; closest = index.search(otherEmbedding, 5);
+ *     index.save();
+ * }
+ * </pre>
+ */
+public class ResponseIndex implements AutoCloseable {
+
+	private static final int MAGIC = 0x484E5357; // "HNSW"
+	private static final String VECTORS_FILE = "vectors.bin";
+	private static final String GRAPH_FILE = "graph.bin";
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Path directory;
+	private final int dimension;
+	private final int m;
+	private final int efConstruction;
+	private final int efSearch;
+	private final double levelMultiplier;
+	private final Random random = new Random(42);
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final FileChannel vectorChannel;
+	private MappedByteBuffer vectors;
+	private int capacity;
+
+	private final List<String> labels = new ArrayList<>();
+	// links.get(node)[level] = neighbour ids of the node on that level
+	private final List<int[][]> links = new ArrayList<>();
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+
+	/**
+	 * Search hit: id and label of the archived answer and its cosine similarity to the query
+	 */
+	public static class Neighbor {
+		private final int id;
+		private final String label;
+		private final double similarity;
+
+		Neighbor(int id, String label, double similarity) {
+			this.id = id;
+			this.label = label;
+			this.similarity = similarity;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public double getSimilarity() {
+			return similarity;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (%.4f)", label, similarity);
+		}
+	}
+
+	/**
+	 * To open the index stored in the directory, or create an empty one.
+	 * Graph parameters come from config: hnswM, hnswEfConstruction, hnswEfSearch.
+	 *
+	 * @param directory
+	 * @param dimension
+	 * 		- embedding size, must match the stored index
+	 * @return ResponseIndex
+	 * @throws IOException
+	 */
+	public static ResponseIndex open(Path directory, int dimension) throws IOException {
+		return new ResponseIndex(directory, dimension, ConfigReader.getInt("hnswM", 16),
+				ConfigReader.getInt("hnswEfConstruction", 100), ConfigReader.getInt("hnswEfSearch", 50));
+	}
+
+	private ResponseIndex(Path directory, int dimension, int m, int efConstruction, int efSearch) throws IOException {
+		this.directory = directory;
+		this.dimension = dimension;
+		this.m = m;
+		this.efConstruction = efConstruction;
+		this.efSearch = efSearch;
+		this.levelMultiplier = 1 / Math.log(m);
+
+		Files.createDirectories(directory);
+		Path graphFile = directory.resolve(GRAPH_FILE);
+		if (Files.exists(graphFile)) {
+			loadGraph(graphFile);
+		}
+		vectorChannel = FileChannel.open(directory.resolve(VECTORS_FILE),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		map(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, labels.size())) * 2));
+	}
+
+	/**
+	 * To get the number of archived answers
+	 *
+	 * @return int
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return labels.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * To get the label of an archived answer
+	 *
+	 * @param id
+	 * @return String
+	 */
+	public String getLabel(int id) {
+		lock.readLock().lock();
+		try {
+			return labels.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * To insert an answer embedding
+	 *
+	 * @param label
+	 * 		- question id or any text identifying the answer
+	 * @param vector
+	 * 		- embedding of the answer
+	 * @return id of the new entry
+	 * @throws IOException
+	 * 		- if the vector file cannot grow
+	 */
+	public int add(String label, float[] vector) throws IOException {
+		checkDimension(vector);
+		lock.writeLock().lock();
+		try {
+			int id = labels.size();
+			if (id == capacity) {
+				map(capacity * 2);
+			}
+			writeVector(id, normalize(vector));
+
+			int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+			int[][] nodeLinks = new int[level + 1][];
+			for (int l = 0; l <= level; l++) {
+				nodeLinks[l] = new int[0];
+			}
+			labels.add(label);
+			links.add(nodeLinks);
+
+			if (entryPoint < 0) {
+				entryPoint = id;
+				maxLevel = level;
+				return id;
+			}
+
+			int current = entryPoint;
+			for (int l = maxLevel; l > level; l--) {
+				current = greedyClosest(id, current, l);
+			}
+			for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+				List<Neighbor> candidates = searchLayer(id, current, efConstruction, l);
+				int[] selected = closest(candidates, m);
+				nodeLinks[l] = selected;
+				for (int neighbor : selected) {
+					connect(neighbor, id, l);
+				}
+				current = candidates.get(0).getId();
+			}
+			if (level > maxLevel) {
+				maxLevel = level;
+				entryPoint = id;
+			}
+			return id;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * To find the k archived answers closest to the query embedding
+	 *
+	 * @param vector
+	 * 		- query embedding
+	 * @param k
+	 * @return neighbours, most similar first
+	 */
+	public List<Neighbor> search(float[] vector, int k) {
+		checkDimension(vector);
+		float[] query = normalize(vector);
+		lock.readLock().lock();
+		try {
+			if (entryPoint < 0) return new ArrayList<>();
+
+			int current = entryPoint;
+			for (int l = maxLevel; l > 0; l--) {
+				current = greedyClosest(query, current, l);
+			}
+			List<Neighbor> found = searchLayer(query, current, Math.max(efSearch, k), 0);
+			return new ArrayList<>(found.subList(0, Math.min(k, found.size())));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * To find pairs of archived answers which are near duplicates of each other (boilerplate answers)
+	 *
+	 * @param minSimilarity
+	 * 		- e.g. 0.95
+	 * @param k
+	 * 		- neighbours checked per answer
+	 * @return pairs [id, other id, similarity x 10000], each pair once, most similar first
+	 */
+	public List<long[]> findNearDuplicates(double minSimilarity, int k) {
+		List<long[]> pairs = new ArrayList<>();
+		int count = size();
+		for (int id = 0; id < count; id++) {
+			float[] vector;
+			lock.readLock().lock();
+			try {
+				vector = readVector(id);
+			} finally {
+				lock.readLock().unlock();
+			}
+			for (Neighbor neighbor : search(vector, k + 1)) {
+				if (neighbor.getId() > id && neighbor.getSimilarity() >= minSimilarity) {
+					pairs.add(new long[]{id, neighbor.getId(), Math.round(neighbor.getSimilarity() * 10000)});
+				}
+			}
+		}
+		pairs.sort((a, b) -> Long.compare(b[2], a[2]));
+		return pairs;
+	}
+
+	/**
+	 * To write the graph and labels to disk (vectors are written through the mapping as they are added)
+	 *
+	 * @throws IOException
+	 */
+	public void save() throws IOException {
+		lock.readLock().lock();
+		try {
+			vectors.force();
+			Path temp = directory.resolve(GRAPH_FILE + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				writeGraph(out);
+			}
+			Files.move(temp, directory.resolve(GRAPH_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		vectorChannel.close();
+	}
+
+	// ------------------- graph search -------------------
+
+	private int greedyClosest(Object query, int start, int level) {
+		int current = start;
+		double best = similarity(query, current);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int neighbor : neighbors(current, level)) {
+				double similarity = similarity(query, neighbor);
+				if (similarity > best) {
+					best = similarity;
+					current = neighbor;
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Best-first search of one layer, returns up to ef nodes, most similar first
+	 */
+	private List<Neighbor> searchLayer(Object query, int start, int ef, int level) {
+		BitSet visited = new BitSet(labels.size());
+		PriorityQueue<Neighbor> candidates = new PriorityQueue<>(
+				Comparator.comparingDouble(Neighbor::getSimilarity).reversed());
+		PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::getSimilarity));
+
+		Neighbor first = new Neighbor(start, null, similarity(query, start));
+		visited.set(start);
+		candidates.add(first);
+		results.add(first);
+
+		while (!candidates.isEmpty()) {
+			Neighbor candidate = candidates.poll();
+			if (results.size() >= ef && candidate.getSimilarity() < results.peek().getSimilarity()) {
+				break;
+			}
+			for (int neighbor : neighbors(candidate.getId(), level)) {
+				if (visited.get(neighbor)) continue;
+				visited.set(neighbor);
+				double similarity = similarity(query, neighbor);
+				if (results.size() < ef || similarity > results.peek().getSimilarity()) {
+					Neighbor found = new Neighbor(neighbor, labels.get(neighbor), similarity);
+					candidates.add(found);
+					results.add(found);
+					if (results.size() > ef) {
+						results.poll();
+					}
+				}
+			}
+		}
+
+		List<Neighbor> sorted = new ArrayList<>();
+		for (Neighbor neighbor : results) {
+			sorted.add(new Neighbor(neighbor.getId(), labels.get(neighbor.getId()), neighbor.getSimilarity()));
+		}
+		sorted.sort(Comparator.comparingDouble(Neighbor::getSimilarity).reversed());
+		return sorted;
+	}
+
+	private void connect(int node, int neighbor, int level) {
+		int[] current = links.get(node)[level];
+		int[] extended = new int[current.length + 1];
+		System.arraycopy(current, 0, extended, 0, current.length);
+		extended[current.length] = neighbor;
+
+		int max = level == 0 ? 2 * m : m;
+		if (extended.length > max) {
+			// keep the neighbours closest to the node
+			List<Neighbor> scored = new ArrayList<>();
+			float[] vector = readVector(node);
+			for (int id : extended) {
+				scored.add(new Neighbor(id, null, similarity(vector, id)));
+			}
+			scored.sort(Comparator.comparingDouble(Neighbor::getSimilarity).reversed());
+			extended = closest(scored, max);
+		}
+		links.get(node)[level] = extended;
+	}
+
+	private int[] neighbors(int node, int level) {
+		int[][] nodeLinks = links.get(node);
+		return level < nodeLinks.length ? nodeLinks[level] : new int[0];
+	}
+
+	private static int[] closest(List<Neighbor> sorted, int count) {
+		int[] ids = new int[Math.min(count, sorted.size())];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = sorted.get(i).getId();
+		}
+		return ids;
+	}
+
+	/**
+	 * Similarity of the query (stored node id or normalized vector) to a stored node
+	 */
+	private double similarity(Object query, int node) {
+		int offset = node * dimension * Float.BYTES;
+		double dot = 0;
+		if (query instanceof Integer) {
+			int queryOffset = (Integer) query * dimension * Float.BYTES;
+			for (int i = 0; i < dimension; i++) {
+				dot += vectors.getFloat(queryOffset + i * Float.BYTES) * vectors.getFloat(offset + i * Float.BYTES);
+			}
+		} else {
+			float[] vector = (float[]) query;
+			for (int i = 0; i < dimension; i++) {
+				dot += vector[i] * vectors.getFloat(offset + i * Float.BYTES);
+			}
+		}
+		return dot;
+	}
+
+	// ------------------- storage -------------------
+
+	private void map(int newCapacity) throws IOException {
+		long bytes = (long) newCapacity * dimension * Float.BYTES;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IOException("Response index is full (" + capacity + " vectors of dimension " + dimension + ")");
+		}
+		vectors = vectorChannel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+		vectors.order(ByteOrder.LITTLE_ENDIAN);
+		capacity = newCapacity;
+	}
+
+	private void writeVector(int id, float[] vector) {
+		int offset = id * dimension * Float.BYTES;
+		for (int i = 0; i < dimension; i++) {
+			vectors.putFloat(offset + i * Float.BYTES, vector[i]);
+		}
+	}
+
+	private float[] readVector(int id) {
+		float[] vector = new float[dimension];
+		int offset = id * dimension * Float.BYTES;
+		for (int i = 0; i < dimension; i++) {
+			vector[i] = vectors.getFloat(offset + i * Float.BYTES);
+		}
+		return vector;
+	}
+
+	private void writeGraph(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(dimension);
+		out.writeInt(labels.size());
+		out.writeInt(entryPoint);
+		out.writeInt(maxLevel);
+		for (int id = 0; id < labels.size(); id++) {
+			out.writeUTF(labels.get(id));
+			int[][] nodeLinks = links.get(id);
+			out.writeInt(nodeLinks.length);
+			for (int[] levelLinks : nodeLinks) {
+				out.writeInt(levelLinks.length);
+				for (int neighbor : levelLinks) {
+					out.writeInt(neighbor);
+				}
+			}
+		}
+	}
+
+	private void loadGraph(Path file) throws IOException {
+		try (InputStream stream = Files.newInputStream(file);
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a response index: " + file);
+			}
+			int storedDimension = in.readInt();
+			if (storedDimension != dimension) {
+				throw new IOException("Response index has dimension " + storedDimension + ", expected " + dimension);
+			}
+			int count = in.readInt();
+			entryPoint = in.readInt();
+			maxLevel = in.readInt();
+			for (int id = 0; id < count; id++) {
+				labels.add(in.readUTF());
+				int[][] nodeLinks = new int[in.readInt()][];
+				for (int l = 0; l < nodeLinks.length; l++) {
+					nodeLinks[l] = new int[in.readInt()];
+					for (int i = 0; i < nodeLinks[l].length; i++) {
+						nodeLinks[l][i] = in.readInt();
+					}
+				}
+				links.add(nodeLinks);
+			}
+		}
+	}
+
+	private float[] normalize(float[] vector) {
+		double norm = 0;
+		for (float value : vector) {
+			norm += value * value;
+		}
+		norm = Math.sqrt(norm);
+		float[] normalized = new float[vector.length];
+		for (int i = 0; i < vector.length; i++) {
+			normalized[i] = norm > 0 ? (float) (vector[i] / norm) : 0;
+		}
+		return normalized;
+	}
+
+	private void checkDimension(float[] vector) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected embedding of dimension " + dimension + ", got " + vector.length);
+		}
+	}
+
+	/**
+	 * To list near-duplicate answers of an archived index:
+	 * mvn compile exec:java -Dexec.mainClass=utils.ResponseIndex -Dexec.args="test-output/response-index 384 0.95"
+	 */
+	public static void main(String[] args) throws IOException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : "test-output/response-index");
+		int dimension = args.length > 1 ? Integer.parseInt(args[1]) : 384;
+		double minSimilarity = args.length > 2 ? Double.parseDouble(args[2]) : 0.95;
+
+		try (ResponseIndex index = open(directory, dimension)) {
+			List<long[]> pairs = index.findNearDuplicates(minSimilarity, 10);
+			System.out.println(pairs.size() + " near-duplicate pairs (>= " + minSimilarity + ") among " + index.size() + " answers");
+			for (long[] pair : pairs) {
+				System.out.println(String.format("%.4f  %s  <->  %s", pair[2] / 10000.0,
+						index.getLabel((int) pair[0]), index.getLabel((int) pair[1])));
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package utils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Single-flight sharing of chat completions within a run (opt-in with responseSharing = true).
+ * <p>
+ * The first request for a key (the request body without its per-request ids) calls the backend; concurrent
+ * requests for the same key wait for that call and later ones get its answer straight away, so tests which
+ * only inspect the answer do not pay the LLM latency again. A waiter calls the backend itself after
+ * responseSharingWaitSeconds, and stops with budget exceeded if its time budget runs out before. A failed call
+ * is not kept, the next request tries again. Tests annotated with {@link FreshResponse} always get their own
+ * completion.
+ * </p>
+ */
+public class ResponseSharing {
+
+	private static final boolean ENABLED = ConfigReader.getBoolean("responseSharing", false);
+	private static final long WAIT_MILLIS = ConfigReader.getInt("responseSharingWaitSeconds", 120) * 1000L;
+
+	private static final Map<String, CompletableFuture<Object>> completions = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Boolean> fresh = ThreadLocal.withInitial(() -> false);
+	private static final AtomicLong calls = new AtomicLong();
+	private static final AtomicLong shared = new AtomicLong();
+
+	/**
+	 * To get the completion of the key, calling the backend only if no other request did so in this run
+	 *
+	 * @param key
+	 * 		- identity of the request, see {@link #key}
+	 * @param call
+	 * 		- backend call
+	 * @return value of the call, possibly obtained by another thread / test
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T share(String key, Supplier<T> call) {
+		if (!ENABLED || fresh.get()) {
+			return call.get();
+		}
+
+		CompletableFuture<Object> own = new CompletableFuture<>();
+		CompletableFuture<Object> existing = completions.putIfAbsent(key, own);
+		if (existing == null) {
+			calls.incrementAndGet();
+			try {
+				T value = call.get();
+				own.complete(value);
+				return value;
+			} catch (RuntimeException | Error e) {
+				completions.remove(key, own);
+				own.completeExceptionally(e);
+				throw e;
+			}
+		}
+
+		long timeout = TimeBudget.cap(WAIT_MILLIS);
+		try {
+			T value = (T) existing.get(timeout, TimeUnit.MILLISECONDS);
+			shared.incrementAndGet();
+			Metrics.increment("uask_shared_responses", "Completions answered by an earlier identical request");
+			Log.event("Reused the completion of an identical request in this run");
+			return value;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a shared completion", e);
+		} catch (ExecutionException e) {
+			// the owner failed; it already removed its entry, so ask again
+			return share(key, call);
+		} catch (TimeoutException e) {
+			if (timeout < WAIT_MILLIS) {
+				throw TimeBudget.exceeded();
+			}
+			Log.event("Identical request still running after " + timeout + " ms, calling the backend directly");
+			calls.incrementAndGet();
+			return call.get();
+		}
+	}
+
+	/**
+	 * To build the sharing key of a JSON request body
+	 *
+	 * @param body
+	 * 		- request body sent to the backend
+	 * @param ignoredFields
+	 * 		- fields which differ between otherwise identical requests (ids, timestamps), removed at any depth
+	 * @return String, the body itself if it is not valid JSON (then it is not shared)
+	 */
+	public static String key(String body, String... ignoredFields) {
+		try {
+			JsonElement json = JsonParser.parseString(body);
+			strip(json, Set.of(ignoredFields));
+			return json.toString();
+		} catch (JsonParseException e) {
+			return body;
+		}
+	}
+
+	/**
+	 * To make the current thread bypass sharing (set by BaseTest for tests annotated with FreshResponse)
+	 *
+	 * @param value
+	 */
+	public static void setFresh(boolean value) {
+		if (value) {
+			fresh.set(true);
+		} else {
+			fresh.remove();
+		}
+	}
+
+	private static void strip(JsonElement json, Set<String> ignoredFields) {
+		if (json.isJsonObject()) {
+			JsonObject object = json.getAsJsonObject();
+			ignoredFields.forEach(object::remove);
+			object.entrySet().forEach(entry -> strip(entry.getValue(), ignoredFields));
+		} else if (json.isJsonArray()) {
+			JsonArray array = json.getAsJsonArray();
+			array.forEach(element -> strip(element, ignoredFields));
+		}
+	}
+
+	/**
+	 * To get backend calls made and requests answered by sharing
+	 *
+	 * @return String
+	 */
+	public static String getSummary() {
+		if (!ENABLED) return "disabled";
+		return "backend calls=" + calls.get() + ", shared=" + shared.get();
+	}
+}
@@ -0,0 +1,34 @@
+package utils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import org.testng.IAnnotationTransformer;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+import org.testng.annotations.ITestAnnotation;
+
+public class RetryListener implements IAnnotationTransformer, ITestListener {
+
+	/**
+	 * To attach TransientRetryAnalyzer to every test which has no retry analyzer of its own
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+		if (ConfigReader.getInt("retryMaxAttempts", 1) > 0 && hasNoRetryAnalyzer(annotation)) {
+			annotation.setRetryAnalyzer(TransientRetryAnalyzer.class);
+		}
+	}
+
+	private static boolean hasNoRetryAnalyzer(ITestAnnotation annotation) {
+		Class<?> analyzer = annotation.getRetryAnalyzerClass();
+		// TestNG reports a missing retryAnalyzer as its internal DisabledRetryAnalyzer
+		return analyzer == null || "DisabledRetryAnalyzer".equals(analyzer.getSimpleName());
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		TransientRetryAnalyzer.recordPassAfterRetry(result);
+	}
+}
@@ -0,0 +1,180 @@
+package utils;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Screenshot capture split in two: the PNG bytes are grabbed on the test thread (the only part which
+ * needs the browser), compression and writing happen on a background executor.
+ * <p>
+ * screenshotFormat = png | jpeg (webp is not available in ImageIO and falls back to jpeg),
+ * screenshotQuality = 0.0 - 1.0 for jpeg, screenshotThreads = size of the background pool.
+ * </p>
+ */
+public class ScreenshotPipeline {
+
+	private static final Logger log = LogManager.getLogger(ScreenshotPipeline.class);
+
+	private static final String DIRECTORY = "screenshots";
+	private static final String FORMAT = resolveFormat(ConfigReader.get("screenshotFormat", "jpeg"));
+	private static final float QUALITY = (float) ConfigReader.getDouble("screenshotQuality", 0.7);
+
+	private static final AtomicInteger sequence = new AtomicInteger();
+	private static final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+	private static final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, ConfigReader.getInt("screenshotThreads", 2)), runnable -> {
+				Thread thread = new Thread(runnable, "screenshot-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * To capture the full page on the calling thread and write it in the background
+	 *
+	 * @param driver
+	 * 		- WebDriver instance
+	 * @param name
+	 * 		- name of the screenshot (test name), made unique per call
+	 * @return future completed with the written file
+	 */
+	public static CompletableFuture<File> capture(WebDriver driver, String name) {
+		return submit(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES), name);
+	}
+
+	/**
+	 * To capture only the given element on the calling thread and write it in the background
+	 *
+	 * @param element
+	 * 		- element to crop to
+	 * @param name
+	 * 		- name of the screenshot (test name), made unique per call
+	 * @return future completed with the written file
+	 */
+	public static CompletableFuture<File> capture(WebElement element, String name) {
+		return submit(element.getScreenshotAs(OutputType.BYTES), name);
+	}
+
+	/**
+	 * To have {@link #awaitAll(int)} also wait for a follow-up of a screenshot (e.g. attaching it to the report)
+	 *
+	 * @param followUp
+	 * 		- stage chained on a future returned by capture
+	 * @return the same stage
+	 */
+	public static <T> CompletableFuture<T> track(CompletableFuture<T> followUp) {
+		pending.add(followUp);
+		followUp.whenComplete((result, error) -> pending.remove(followUp));
+		return followUp;
+	}
+
+	/**
+	 * To wait for all screenshots still being written and attached (before the report is flushed at suite end)
+	 *
+	 * @param timeoutSeconds
+	 */
+	public static void awaitAll(int timeoutSeconds) {
+		try {
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(timeoutSeconds, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			log.warn("Not all screenshots were written: " + e.getMessage());
+		}
+	}
+
+	private static CompletableFuture<File> submit(byte[] png, String name) {
+		File file = new File(DIRECTORY, uniqueName(name) + "." + ("png".equals(FORMAT) ? "png" : "jpg"));
+		CompletableFuture<File> future = CompletableFuture.supplyAsync(() -> write(png, file), executor);
+		pending.add(future);
+		future.whenComplete((written, error) -> {
+			pending.remove(future);
+			if (error != null) {
+				log.error("Error writing screenshot " + file.getName() + ": " + error.getMessage());
+			}
+		});
+		return future;
+	}
+
+	private static File write(byte[] png, File file) {
+		try {
+			file.getParentFile().mkdirs();
+			if ("png".equals(FORMAT)) {
+				Files.write(file.toPath(), png);
+			} else {
+				writeJpeg(ImageIO.read(new ByteArrayInputStream(png)), file);
+			}
+			log.info("Screenshot taken: " + file.getAbsolutePath());
+			return file;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void writeJpeg(BufferedImage image, File file) throws IOException {
+		// JPEG has no alpha channel, so draw onto an RGB image first
+		BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = rgb.createGraphics();
+		try {
+			graphics.drawImage(image, 0, 0, null);
+		} finally {
+			graphics.dispose();
+		}
+
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		ImageWriter writer = writers.next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(QUALITY);
+
+		try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+			writer.setOutput(output);
+			writer.write(null, new IIOImage(rgb, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+	}
+
+	private static String uniqueName(String name) {
+		String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS"));
+		return name + "_" + timestamp + "_" + Thread.currentThread().getId() + "_" + sequence.incrementAndGet();
+	}
+
+	private static String resolveFormat(String format) {
+		switch (format.toLowerCase()) {
+		case "png":
+			return "png";
+		case "jpg":
+		case "jpeg":
+			return "jpeg";
+		default:
+			log.warn("Screenshot format '" + format + "' not supported, using jpeg");
+			return "jpeg";
+		}
+	}
+}
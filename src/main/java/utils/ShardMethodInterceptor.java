@@ -0,0 +1,39 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+public class ShardMethodInterceptor implements IMethodInterceptor {
+
+	private static final Logger log = LogManager.getLogger(ShardMethodInterceptor.class);
+
+	/**
+	 * To keep only the test methods of this shard. Data driven methods run on every shard since
+	 * their data providers already return only the questions of this shard (see ShardUtils.filter).
+	 */
+	@Override
+	public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+		if (ShardUtils.getShardCount() == 1) {
+			return methods;
+		}
+
+		List<IMethodInstance> shard = new ArrayList<>();
+		for (IMethodInstance instance : methods) {
+			ITestNGMethod method = instance.getMethod();
+			String key = context.getName() + "/" + method.getRealClass().getName() + "." + method.getMethodName();
+			if (method.isDataDriven() || ShardUtils.isInShard(key)) {
+				shard.add(instance);
+			}
+		}
+		log.info(ShardUtils.getShardName() + " runs " + shard.size() + " of " + methods.size()
+				+ " test methods in '" + context.getName() + "'");
+		return shard;
+	}
+}
@@ -0,0 +1,250 @@
+package utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ITestResult;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Machine-readable results of one shard (test-output/shards/shard-i-of-n.json) and the merge
+ * step which combines all shard files into one ExtentReport and one summary.
+ * <p>
+ * Merge: mvn compile exec:java -Dexec.mainClass=utils.ShardReport [-Dexec.args=test-output/shards]
+ * </p>
+ */
+public class ShardReport {
+
+	public static final String SHARD_DIR = "test-output/shards";
+
+	private static final Logger log = LogManager.getLogger(ShardReport.class);
+
+	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+	private static final List<TestRecord> records = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * Result of a single test method invocation
+	 */
+	public static class TestRecord {
+		String shard;
+		String testName;
+		String className;
+		String method;
+		String status;
+		long startMillis;
+		long durationMs;
+		String error;
+		List<String[]> rows;
+	}
+
+	/**
+	 * Content of a shard file
+	 */
+	public static class ShardFile {
+		String shard;
+		int shardIndex;
+		int shardCount;
+		List<TestRecord> tests;
+	}
+
+	/**
+	 * To record the result of a finished test together with its AI result rows
+	 *
+	 * @param result
+	 * 		- TestNG result of the test method
+	 * @param rows
+	 * 		- rows logged through ChatReportUtils
+	 */
+	public static void record(ITestResult result, List<String[]> rows) {
+		TestRecord record = new TestRecord();
+		record.shard = ShardUtils.getShardName();
+		record.testName = result.getTestContext() != null ? result.getTestContext().getName() : "";
+		record.className = result.getTestClass().getRealClass().getSimpleName();
+		record.method = result.getMethod().getMethodName();
+		String budgetExceeded = TimeBudget.getExceeded(result);
+		record.status = budgetExceeded != null ? "BUDGET_EXCEEDED" : toStatus(result.getStatus());
+		record.startMillis = result.getStartMillis();
+		record.durationMs = Math.max(0, result.getEndMillis() - result.getStartMillis());
+		record.error = budgetExceeded != null ? budgetExceeded
+				: result.getThrowable() != null ? result.getThrowable().toString().split("\n")[0] : null;
+		record.rows = rows;
+		records.add(record);
+	}
+
+	/**
+	 * To write the results recorded in this JVM to the shard file
+	 *
+	 * @return written file or null if writing failed
+	 */
+	public static File write() {
+		ShardFile shardFile = new ShardFile();
+		shardFile.shard = ShardUtils.getShardName();
+		shardFile.shardIndex = ShardUtils.getShardIndex();
+		shardFile.shardCount = ShardUtils.getShardCount();
+		synchronized (records) {
+			shardFile.tests = new ArrayList<>(records);
+		}
+
+		File file = new File(SHARD_DIR, shardFile.shard + ".json");
+		file.getParentFile().mkdirs();
+		try (Writer writer = new FileWriter(file)) {
+			gson.toJson(shardFile, writer);
+			log.info("Shard results written: " + file.getAbsolutePath());
+			return file;
+		} catch (IOException e) {
+			log.error("Failed to write shard results: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * To merge all shard files of the given directory into one ExtentReport and one summary
+	 *
+	 * @param args
+	 * 		- optional shard directory, default test-output/shards
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : SHARD_DIR);
+		File[] files = dir.listFiles((d, name) -> name.startsWith("shard-") && name.endsWith(".json"));
+		if (files == null || files.length == 0) {
+			throw new IllegalStateException("No shard results found in " + dir.getAbsolutePath());
+		}
+		Arrays.sort(files);
+
+		List<ShardFile> shards = new ArrayList<>();
+		for (File file : files) {
+			try (Reader reader = new FileReader(file)) {
+				shards.add(gson.fromJson(reader, ShardFile.class));
+			}
+		}
+
+		writeMergedExtentReport(shards, new File(dir, "ExtentReport-merged.html"));
+		Map<String, Object> summary = summarize(shards);
+		try (Writer writer = new FileWriter(new File(dir, "summary.json"))) {
+			gson.toJson(summary, writer);
+		}
+		log.info("Shard summary:\n" + gson.toJson(summary));
+	}
+
+	/**
+	 * To build one ExtentReport out of all shards, one parent per test tag and class
+	 */
+	private static void writeMergedExtentReport(List<ShardFile> shards, File output) {
+		ExtentReports extent = new ExtentReports();
+		extent.attachReporter(new ExtentSparkReporter(output.getPath()));
+		Map<String, ExtentTest> parents = new LinkedHashMap<>();
+
+		for (ShardFile shard : shards) {
+			for (TestRecord record : shard.tests) {
+				String parentName = record.className + (record.testName.isEmpty() ? "" : " [" + record.testName + "]");
+				ExtentTest parent = parents.computeIfAbsent(parentName, extent::createTest);
+				ExtentTest node = parent.createNode(record.method).assignDevice(record.shard);
+				node.getModel().setStartTime(new Date(record.startMillis));
+				node.getModel().setEndTime(new Date(record.startMillis + record.durationMs));
+
+				String table = ChatReportUtils.buildHtmlTable(record.rows);
+				if (!table.isEmpty()) {
+					node.info("Test Result Table:<br>" + table);
+				}
+				switch (record.status) {
+				case "PASS":
+					node.pass("Test Passed");
+					break;
+				case "FAIL":
+					node.fail(record.error != null ? record.error : "Test Failed");
+					break;
+				case "BUDGET_EXCEEDED":
+					node.fail("Budget exceeded: " + record.error);
+					break;
+				default:
+					node.skip(record.error != null ? record.error : "Test Skipped");
+					break;
+				}
+			}
+		}
+		extent.flush();
+		log.info("Merged ExtentReport written: " + output.getAbsolutePath());
+	}
+
+	/**
+	 * To aggregate counts and latency percentiles over all shards
+	 */
+	private static Map<String, Object> summarize(List<ShardFile> shards) {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		Map<String, Integer> perShard = new LinkedHashMap<>();
+		List<Long> durations = new ArrayList<>();
+		int passed = 0, failed = 0, budgetExceeded = 0, skipped = 0;
+
+		for (ShardFile shard : shards) {
+			perShard.put(shard.shard, shard.tests.size());
+			for (TestRecord record : shard.tests) {
+				durations.add(record.durationMs);
+				if ("PASS".equals(record.status)) passed++;
+				else if ("FAIL".equals(record.status)) failed++;
+				else if ("BUDGET_EXCEEDED".equals(record.status)) budgetExceeded++;
+				else skipped++;
+			}
+		}
+		Collections.sort(durations);
+
+		summary.put("shards", perShard);
+		summary.put("total", durations.size());
+		summary.put("passed", passed);
+		summary.put("failed", failed);
+		summary.put("budgetExceeded", budgetExceeded);
+		summary.put("skipped", skipped);
+
+		Map<String, Long> latency = new LinkedHashMap<>();
+		latency.put("p50", percentile(durations, 50));
+		latency.put("p90", percentile(durations, 90));
+		latency.put("p95", percentile(durations, 95));
+		latency.put("p99", percentile(durations, 99));
+		latency.put("max", durations.isEmpty() ? 0 : durations.get(durations.size() - 1));
+		summary.put("testDurationMs", latency);
+		return summary;
+	}
+
+	/**
+	 * To get the nearest-rank percentile of sorted values
+	 *
+	 * @param sorted
+	 * 		- values in ascending order
+	 * @param percentile
+	 * 		- 0 - 100
+	 * @return long, 0 if there are no values
+	 */
+	public static long percentile(List<Long> sorted, double percentile) {
+		if (sorted.isEmpty()) return 0;
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+		return sorted.get(Math.min(sorted.size() - 1, Math.max(0, rank - 1)));
+	}
+
+	private static String toStatus(int status) {
+		switch (status) {
+		case ITestResult.SUCCESS:
+			return "PASS";
+		case ITestResult.FAILURE:
+			return "FAIL";
+		default:
+			return "SKIP";
+		}
+	}
+}
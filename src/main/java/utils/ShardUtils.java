@@ -0,0 +1,81 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class ShardUtils {
+
+	/**
+	 * To get the index of this shard (shardIndex, 0 based)
+	 *
+	 * @return int
+	 */
+	public static int getShardIndex() {
+		return ConfigReader.getInt("shardIndex", 0);
+	}
+
+	/**
+	 * To get the total number of shards (shardCount)
+	 *
+	 * @return int
+	 */
+	public static int getShardCount() {
+		return Math.max(1, ConfigReader.getInt("shardCount", 1));
+	}
+
+	/**
+	 * To get the shard name used for result files, e.g. shard-0-of-4
+	 *
+	 * @return String
+	 */
+	public static String getShardName() {
+		return "shard-" + getShardIndex() + "-of-" + getShardCount();
+	}
+
+	/**
+	 * To check whether the given key (question id, test method name) belongs to this shard.
+	 * The split uses a stable hash so every JVM/machine computes the same assignment.
+	 *
+	 * @param key
+	 * @return boolean
+	 * 		- true if this shard owns the key
+	 */
+	public static boolean isInShard(String key) {
+		int count = getShardCount();
+		int index = getShardIndex();
+		if (index < 0 || index >= count) {
+			throw new IllegalArgumentException("shardIndex must be between 0 and " + (count - 1) + " but was " + index);
+		}
+		return count == 1 || Math.floorMod(stableHash(key), count) == index;
+	}
+
+	/**
+	 * To keep only the questions owned by this shard (by id)
+	 *
+	 * @param questions
+	 * @return List of questions of this shard, null if questions is null
+	 */
+	public static List<TestData> filter(List<TestData> questions) {
+		if (questions == null || getShardCount() == 1) {
+			return questions;
+		}
+		List<TestData> shard = new ArrayList<>();
+		for (TestData question : questions) {
+			if (isInShard(question.getId())) {
+				shard.add(question);
+			}
+		}
+		return shard;
+	}
+
+	/**
+	 * To get a hash which does not depend on the JVM (unlike String.hashCode across implementations)
+	 */
+	private static long stableHash(String key) {
+		CRC32 crc = new CRC32();
+		crc.update(key.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,42 @@
+package utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durations of the one-off phases of a run (report setup, model load and warm-up, first browser launch, ...).
+ * Only the first occurrence of a phase is kept, later ones are regular per-test work.
+ */
+public class StartupTimings {
+
+	// phase -> [start, end] as System.nanoTime()
+	private static final Map<String, long[]> phases = new ConcurrentHashMap<>();
+
+	/**
+	 * To record a phase which started at startNanos and ends now, if not recorded yet
+	 *
+	 * @param phase
+	 * @param startNanos
+	 * 		- System.nanoTime() at the start of the phase
+	 */
+	public static void record(String phase, long startNanos) {
+		phases.putIfAbsent(phase, new long[]{startNanos, System.nanoTime()});
+	}
+
+	/**
+	 * To get the phases ordered by start, with the start relative to the first phase
+	 *
+	 * @return String, one phase per line
+	 */
+	public static String getSummary() {
+		if (phases.isEmpty()) return " none recorded";
+
+		long first = phases.values().stream().mapToLong(times -> times[0]).min().getAsLong();
+		StringBuilder sb = new StringBuilder();
+		phases.entrySet().stream()
+				.sorted((a, b) -> Long.compare(a.getValue()[0], b.getValue()[0]))
+				.forEach(entry -> sb.append(String.format("%n  %-28s start +%6d ms, took %6d ms", entry.getKey(),
+						(entry.getValue()[0] - first) / 1_000_000, (entry.getValue()[1] - entry.getValue()[0]) / 1_000_000)));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,91 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * Per-test counters and end-of-run summaries of the performance features (scoring tiers, startup timings,
+ * embedding cache, API calls, tokens, response sharing, retries, waits, warm profiles), so BaseTest only
+ * handles the browser and report lifecycle. Attached to every test class by BaseTest.
+ * <p>
+ * The test callbacks run on the test thread before @AfterMethod, while the thread-local counters and the
+ * result rows of the test are still set.
+ * </p>
+ */
+public class SuiteSummaryListener implements ISuiteListener, ITestListener {
+
+	private static final Logger log = LogManager.getLogger(SuiteSummaryListener.class);
+
+	@Override
+	public void onStart(ISuite suite) {
+		Metrics.startServer();
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+		record(result);
+	}
+
+	/**
+	 * To log the summaries of the run and save the histories and reports the next run starts from
+	 */
+	@Override
+	public void onFinish(ISuite suite) {
+		ShardReport.write();
+		AdaptiveWait.saveHistory();
+		TextUtils.saveResponseArchive();
+		log.info("Answers decided per scoring tier: " + CascadeScorer.getSummary());
+		log.info("Startup phases:" + StartupTimings.getSummary());
+		log.info("Embedding cache: " + CachingEmbeddingBackend.getStatistics());
+		log.info("API calls:" + ApiResilience.getSummary());
+		log.info("Tokens per language / model: " + TokenAccounting.getSummary());
+		log.info("Response sharing: " + ResponseSharing.getSummary());
+		log.info("Retried tests:" + TransientRetryAnalyzer.getSummary());
+		log.info("Top waits:" + WaitAudit.getSummary());
+		log.info("Wait time per test and phase:" + WaitAudit.getFlameSummary());
+		WaitAudit.write();
+		log.info("Warm browser profiles:" + ProfileTemplates.getSummary());
+		Metrics.write();
+		Metrics.stopServer();
+	}
+
+	private static void record(ITestResult result) {
+		log.info("Time spent in explicit waits for " + result.getName() + ": " + AdaptiveWait.getWaitedMillis() + " ms");
+		AdaptiveWait.resetWaitedMillis();
+		log.info("Element lookups for " + result.getName() + ": " + ElementCache.getLookups()
+				+ ", round trips saved by cache: " + ElementCache.getSavedLookups());
+		ElementCache.resetCounters();
+
+		// Keep machine-readable result of this shard (a retried attempt is reported by its last attempt)
+		if (!result.wasRetried()) {
+			ShardReport.record(result, ChatReportUtils.getRows());
+		}
+
+		String status = result.wasRetried() ? "retried" : TimeBudget.getExceeded(result) != null ? "budget_exceeded"
+				: result.getStatus() == ITestResult.SUCCESS ? "pass"
+				: result.getStatus() == ITestResult.SKIP ? "skip" : "fail";
+		String testClass = result.getTestClass().getRealClass().getSimpleName();
+		Metrics.increment("uask_tests", "Test methods by class and status", "class", testClass, "status", status);
+		Metrics.observe("uask_test_seconds", "Test method duration by class", (result.getEndMillis() - result.getStartMillis()) / 1000.0,
+				"class", testClass);
+	}
+}
@@ -6,6 +6,7 @@ public class TestDataContainer {
 	private List<TestData> ui;
 	private List<TestData> api_tests;
 	private List<TestData> security_tests;
+	private List<Conversation> conversations;
 
 	public List<TestData> getUi() {
 		return ui;
@@ -30,4 +31,12 @@ public class TestDataContainer {
     public void setApi(List<TestData> api_tests) {
         this.api_tests = api_tests;
     }
-}
\ No newline at end of file
+
+    public List<Conversation> getConversations() {
+        return conversations;
+    }
+
+    public void setConversations(List<Conversation> conversations) {
+        this.conversations = conversations;
+    }
+}
@@ -25,6 +25,9 @@ public class TestListener implements ITestListener {
 
     @Override
     public void onTestSkipped(ITestResult result) {
+        if (result.wasRetried()) {
+            return; // transient failure, reported by the retry
+        }
         Log.warnEvent("Test Skipped");
     }
 
@@ -1,16 +1,22 @@
 package utils;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.Normalizer;
-import ai.djl.Application;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import ai.djl.ModelException;
-import ai.djl.inference.Predictor;
-import ai.djl.repository.zoo.Criteria;
-import ai.djl.repository.zoo.ZooModel;
-import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.translate.TranslateException;
 
 public class TextUtils {
+
+    private static final Logger log = LogManager.getLogger(TextUtils.class);
+
+    // Archive of actual responses for k-NN / near-duplicate search, opened on first use
+    private static ResponseIndex responseIndex;
 	
 	// ------------------- Keyword-based similarity -------------------
 
@@ -89,7 +95,7 @@ public class TextUtils {
      * @param text
      * @return String
      */
-    private static String normalizeText(String text) {
+    static String normalizeText(String text) {
         text = text.toLowerCase().trim();
 
         // Remove all punctuation
@@ -129,33 +135,54 @@ public class TextUtils {
      * @throws TranslateException 
      * 		- if an error occurs during the translation of text into embeddings
      *
-     * @implNote This method uses DJL (Deep Java Library) with the PyTorch engine.
-     *           The underlying model "sentence-transformers/all-MiniLM-L6-v2" generates
-     *           embeddings suitable for semantic similarity, clustering, or semantic search tasks.
+     * @implNote The model is the default backend of {@link EmbeddingRegistry} (config embeddingBackend),
+     *           by default DJL with the PyTorch engine and "sentence-transformers/all-MiniLM-L6-v2",
+     *           which generates embeddings suitable for semantic similarity, clustering, or semantic search tasks.
      *
      * @see #cosineSimilarity(float[], float[])
      */
     public static double getSemanticSimilarity(String text1, String text2)
             throws IOException, ModelException, TranslateException {
+        return similarity(EmbeddingRegistry.forLanguage(null), text1, text2);
+    }
 
-        Criteria<String, float[]> criteria = Criteria.builder()
-                .setTypes(String.class, float[].class)
-                .optApplication(Application.NLP.TEXT_EMBEDDING)
-                .optEngine("PyTorch")  // optional, but ensures PyTorch backend
-                .optModelName("sentence-transformers/all-MiniLM-L6-v2")
-                .build();
-
-        try (ZooModel<String, float[]> model = ModelZoo.loadModel(criteria);
-             Predictor<String, float[]> predictor = model.newPredictor()) {
-
-            float[] emb1 = predictor.predict(text1);
-            float[] emb2 = predictor.predict(text2);
-
-            return cosineSimilarity(emb1, emb2);
-        }
+    /**
+     * Computes the semantic similarity between two texts of the same language with the embedding model
+     * configured for it (embeddingModel.&lt;LANG&gt;, e.g. a multilingual MiniLM for AR).
+     *
+     * @param text1
+     * 		- the first input text for comparison
+     * @param text2
+     * 		- the second input text for comparison
+     * @param lang
+     * 		- language of both texts (TestData.lang), null for the default model
+     * @return a double
+     * 		- the value representing the semantic similarity between text1 and text2
+     * @throws IOException
+     * 		- if there is an error loading the model or reading model files
+     * @throws ModelException
+     * 		- if there is an error related to the model's configuration or inference
+     * @throws TranslateException
+     * 		- if an error occurs during the translation of text into embeddings
+     */
+    public static double getSemanticSimilarity(String text1, String text2, String lang)
+            throws IOException, ModelException, TranslateException {
+        return similarity(EmbeddingRegistry.forLanguage(lang), text1, text2);
     }
 
+    private static double similarity(EmbeddingBackend backend, String text1, String text2) throws TranslateException {
+        ModelWarmUp.awaitReady();
 
+        // one batch, so a daemon backend answers both texts in a single round trip
+        long start = System.nanoTime();
+        List<float[]> embeddings = backend.embedBatch(Arrays.asList(text1, text2));
+        Metrics.observe("uask_embedding_seconds", "Embedding time of an expected / actual pair", (System.nanoTime() - start) / 1e9,
+                "backend", backend.getName());
+        double similarity = cosineSimilarity(embeddings.get(0), embeddings.get(1));
+        Metrics.observe("uask_similarity_score", "Semantic similarity of expected and actual answers", Metrics.SCORE_BUCKETS,
+                similarity, "backend", backend.getName());
+        return similarity;
+    }
 
     /**
      * To computes the cosine similarity between two float vectors.
@@ -172,7 +199,7 @@ public class TextUtils {
      * 		- it representing the cosine similarity between vec1 and vec2
      *
      */
-    private static double cosineSimilarity(float[] vec1, float[] vec2) {
+    static double cosineSimilarity(float[] vec1, float[] vec2) {
         double dot = 0.0, norm1 = 0.0, norm2 = 0.0;
         for (int i = 0; i < vec1.length; i++) {
             dot += vec1[i] * vec2[i];
@@ -181,4 +208,70 @@ public class TextUtils {
         }
         return dot / (Math.sqrt(norm1) * Math.sqrt(norm2));
     }
+
+	// ------------------- Archive of responses (HNSW index) -------------------
+
+    /**
+     * To add a response to the archive index (responseArchive = true, stored in responseIndexDir).
+     * Archiving is best effort: failures are logged and do not fail the test.
+     *
+     * @param label
+     * 		- question id or other label of the response
+     * @param response
+     * 		- AI generated response
+     */
+    public static void archiveResponse(String label, String response) {
+        if (!ConfigReader.getBoolean("responseArchive", false) || response == null || response.isEmpty()) {
+            return;
+        }
+        try {
+            float[] embedding = EmbeddingRegistry.forLanguage(null).embed(response);
+            responseIndex(embedding.length).add(label, embedding);
+        } catch (Exception e) {
+            log.warn("Could not archive response of " + label + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * To find the archived responses closest to the given one
+     *
+     * @param response
+     * 		- AI generated response
+     * @param k
+     * 		- number of neighbours
+     * @return neighbours with label and cosine similarity, most similar first
+     * @throws IOException
+     * 		- if the model or the index cannot be loaded
+     * @throws ModelException
+     * 		- if there is an error related to the model's configuration or inference
+     * @throws TranslateException
+     * 		- if an error occurs during the translation of text into embeddings
+     */
+    public static List<ResponseIndex.Neighbor> findSimilarResponses(String response, int k)
+            throws IOException, ModelException, TranslateException {
+        float[] embedding = EmbeddingRegistry.forLanguage(null).embed(response);
+        return responseIndex(embedding.length).search(embedding, k);
+    }
+
+    /**
+     * To persist and close the archive index (at suite end), does nothing if it was never opened
+     */
+    public static synchronized void saveResponseArchive() {
+        if (responseIndex == null) return;
+        try (ResponseIndex index = responseIndex) {
+            index.save();
+            log.info("Response archive saved with " + index.size() + " responses");
+        } catch (IOException e) {
+            log.error("Could not save response archive: " + e.getMessage(), e);
+        } finally {
+            responseIndex = null;
+        }
+    }
+
+    private static synchronized ResponseIndex responseIndex(int dimension) throws IOException {
+        if (responseIndex == null) {
+            responseIndex = ResponseIndex.open(Paths.get(ConfigReader.get("responseIndexDir", "test-output/response-index")), dimension);
+        }
+        return responseIndex;
+    }
 }
@@ -0,0 +1,264 @@
+package utils;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+/**
+ * Time budgets with cooperative cancellation: a deadline for the whole suite (suiteDeadlineMinutes), one per
+ * test (testBudgetSeconds or {@link Budget}) and one per phase of a test (phaseBudget.&lt;phase&gt;).
+ * <p>
+ * Waits (AdaptiveWait, ChatTabPool) and API calls (ApiResilience, APIUtils) never wait longer than
+ * {@link #remainingMillis()}; when the budget is used up they throw {@link BudgetExceededException} instead of
+ * waiting on. The test result is marked, so BaseTest reports it as "budget exceeded" with the phase which
+ * consumed the time, distinct from a wrong answer or a plain timeout, and it is not retried.
+ * </p>
+ * <pre>
+ * TimeBudget.Phase phase = TimeBudget.phase("answer");
+ * try {
+ *     ...
+ * } finally {
+ *     phase.close();
+ * }
+ * </pre>
+ */
+public class TimeBudget {
+
+	private static final String EXCEEDED = "budgetExceeded";
+	private static final long SUITE_DEADLINE_MINUTES = ConfigReader.getInt("suiteDeadlineMinutes", 0);
+	private static final long TEST_BUDGET_SECONDS = ConfigReader.getInt("testBudgetSeconds", 0);
+
+	private static volatile long suiteDeadline; // System.nanoTime(), 0 = none
+	private static final ThreadLocal<TestBudget> current = new ThreadLocal<>();
+
+	/**
+	 * Thrown by waits and calls when the suite, test or phase budget is used up
+	 */
+	public static class BudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final String phase;
+
+		public BudgetExceededException(String scope, String phase, long budgetMillis, long leftMillis) {
+			super("Time budget exceeded: " + scope + " budget of " + budgetMillis / 1000 + " s "
+					+ (leftMillis > 0 ? "too short to go on, " + leftMillis + " ms left" : "used up")
+					+ (phase != null ? " in phase '" + phase + "'" : ""));
+			this.phase = phase;
+		}
+
+		public String getPhase() {
+			return phase;
+		}
+	}
+
+	/**
+	 * Open phase of the current test, closing it restores the enclosing phase
+	 */
+	public static class Phase implements AutoCloseable {
+		private final TestBudget budget;
+		private final String name;
+		private final String previous;
+		private final long previousDeadline;
+		private final long previousBudgetMillis;
+		private final long start = System.nanoTime();
+
+		private Phase(TestBudget budget, String name) {
+			this.budget = budget;
+			this.name = name;
+			this.previous = budget != null ? budget.phase : null;
+			this.previousDeadline = budget != null ? budget.phaseDeadline : 0;
+			this.previousBudgetMillis = budget != null ? budget.phaseBudgetMillis : 0;
+			if (budget != null) {
+				long seconds = ConfigReader.getInt("phaseBudget." + name, 0);
+				long deadline = start + seconds * 1_000_000_000L;
+				budget.phase = name;
+				// a nested phase can only shorten the deadline of the enclosing phase, never drop it
+				if (seconds > 0 && (previousDeadline == 0 || deadline - previousDeadline < 0)) {
+					budget.phaseDeadline = deadline;
+					budget.phaseBudgetMillis = seconds * 1000;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if (budget == null) return;
+			budget.consumed.merge(name, (System.nanoTime() - start) / 1_000_000, Long::sum);
+			budget.phase = previous;
+			budget.phaseDeadline = previousDeadline;
+			budget.phaseBudgetMillis = previousBudgetMillis;
+		}
+	}
+
+	/**
+	 * Budget of the test running on a thread
+	 */
+	private static class TestBudget {
+		private final long start = System.nanoTime();
+		private final long budgetMillis;
+		private final long deadline;
+		private final Map<String, Long> consumed = new LinkedHashMap<>();
+		private String phase;
+		private long phaseDeadline;
+		private long phaseBudgetMillis;
+
+		TestBudget(long budgetMillis) {
+			this.budgetMillis = budgetMillis;
+			this.deadline = budgetMillis > 0 ? start + budgetMillis * 1_000_000 : 0;
+		}
+	}
+
+	/**
+	 * To start the suite deadline (once, at suite start)
+	 */
+	public static void startSuite() {
+		if (suiteDeadline == 0 && SUITE_DEADLINE_MINUTES > 0) {
+			suiteDeadline = System.nanoTime() + SUITE_DEADLINE_MINUTES * 60_000_000_000L;
+		}
+	}
+
+	/**
+	 * To check whether the suite deadline has passed (new tests are then skipped)
+	 *
+	 * @return boolean
+	 */
+	public static boolean isSuiteExpired() {
+		return suiteDeadline != 0 && System.nanoTime() >= suiteDeadline;
+	}
+
+	/**
+	 * To start the budget of the test method on the current thread
+	 *
+	 * @param method
+	 * 		- test method, its {@link Budget} overrides testBudgetSeconds
+	 */
+	public static void startTest(Method method) {
+		Budget annotation = method != null ? method.getAnnotation(Budget.class) : null;
+		long seconds = annotation != null ? annotation.seconds() : TEST_BUDGET_SECONDS;
+		current.set(new TestBudget(seconds * 1000));
+	}
+
+	/**
+	 * To end the budget of the current thread
+	 *
+	 * @return time consumed per phase, e.g. "login=2.1s answer=41.0s", empty if no phase was entered
+	 */
+	public static String endTest() {
+		TestBudget budget = current.get();
+		current.remove();
+		if (budget == null) return "";
+		StringBuilder sb = new StringBuilder();
+		budget.consumed.forEach((phase, millis) -> sb.append(sb.length() > 0 ? " " : "")
+				.append(String.format("%s=%.1fs", phase, millis / 1000.0)));
+		return sb.toString();
+	}
+
+	/**
+	 * To enter a phase of the current test (phaseBudget.&lt;name&gt; seconds, unlimited if not configured)
+	 *
+	 * @param name
+	 * @return Phase to close when the phase ends
+	 */
+	public static Phase phase(String name) {
+		return new Phase(current.get(), name);
+	}
+
+	/**
+	 * To get the phase the current test is in
+	 *
+	 * @return phase name, null outside of a phase
+	 */
+	public static String getPhase() {
+		TestBudget budget = current.get();
+		return budget != null ? budget.phase : null;
+	}
+
+	/**
+	 * To get the time left before the first of the suite, test and phase deadlines
+	 *
+	 * @return milliseconds, Long.MAX_VALUE without any budget, 0 or less when used up
+	 */
+	public static long remainingMillis() {
+		long now = System.nanoTime();
+		long remaining = Long.MAX_VALUE;
+		if (suiteDeadline != 0) remaining = Math.min(remaining, (suiteDeadline - now) / 1_000_000);
+		TestBudget budget = current.get();
+		if (budget != null) {
+			if (budget.deadline != 0) remaining = Math.min(remaining, (budget.deadline - now) / 1_000_000);
+			if (budget.phaseDeadline != 0) remaining = Math.min(remaining, (budget.phaseDeadline - now) / 1_000_000);
+		}
+		return remaining;
+	}
+
+	/**
+	 * To cap a timeout by the remaining budget
+	 *
+	 * @param requestedMillis
+	 * @return the smaller of both, at least 0
+	 */
+	public static long cap(long requestedMillis) {
+		return Math.max(0, Math.min(requestedMillis, remainingMillis()));
+	}
+
+	/**
+	 * To throw BudgetExceededException if the budget is used up
+	 */
+	public static void check() {
+		if (remainingMillis() <= 0) {
+			throw exceeded();
+		}
+	}
+
+	/**
+	 * To build the exception for the deadline which limits the caller, the earliest of suite, test and phase,
+	 * marking the running test. Callers also use it before that deadline has passed, when the remaining time
+	 * is too short for what they would do next (a capped wait, a backoff).
+	 *
+	 * @return BudgetExceededException
+	 */
+	public static BudgetExceededException exceeded() {
+		long now = System.nanoTime();
+		TestBudget budget = current.get();
+		String phase = budget != null ? budget.phase : null;
+		String scope = "test";
+		long deadline = 0;
+		long budgetMillis = budget != null ? budget.budgetMillis : 0;
+		if (suiteDeadline != 0) {
+			scope = "suite";
+			deadline = suiteDeadline;
+			budgetMillis = SUITE_DEADLINE_MINUTES * 60_000;
+		}
+		if (budget != null && budget.deadline != 0 && (deadline == 0 || budget.deadline - deadline < 0)) {
+			scope = "test";
+			deadline = budget.deadline;
+			budgetMillis = budget.budgetMillis;
+		}
+		if (budget != null && budget.phaseDeadline != 0 && (deadline == 0 || budget.phaseDeadline - deadline < 0)) {
+			scope = "phase";
+			deadline = budget.phaseDeadline;
+			budgetMillis = budget.phaseBudgetMillis;
+		}
+		BudgetExceededException exception = new BudgetExceededException(scope, phase, budgetMillis,
+				deadline != 0 ? Math.max(0, (deadline - now) / 1_000_000) : 0);
+
+		ITestResult result = Reporter.getCurrentTestResult();
+		if (result != null && result.getAttribute(EXCEEDED) == null) {
+			result.setAttribute(EXCEEDED, exception.getMessage());
+		}
+		return exception;
+	}
+
+	/**
+	 * To get the budget overrun of a test result
+	 *
+	 * @param result
+	 * @return message naming the budget and phase, null if the test stayed within its budgets
+	 */
+	public static String getExceeded(ITestResult result) {
+		Object exceeded = result.getAttribute(EXCEEDED);
+		return exceeded != null ? exceeded.toString() : null;
+	}
+}
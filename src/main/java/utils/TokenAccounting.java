@@ -0,0 +1,215 @@
+package utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+
+/**
+ * Token counts of every question / answer pair, with throughput and cost, aggregated per language and model.
+ * <p>
+ * Tokens are counted with the HuggingFace tokenizer configured by "tokenizer" (hub name, local directory or
+ * tokenizer.json path). When none is set, or it cannot be loaded (no network, wrong path), the count falls back
+ * to an estimate of one token per 4 characters, marked as "approx" in the summary. Prices come from
+ * tokenPriceInput.&lt;model&gt; / tokenPriceOutput.&lt;model&gt; in USD per million tokens.
+ * </p>
+ */
+public class TokenAccounting {
+
+	private static final Logger log = LogManager.getLogger(TokenAccounting.class);
+
+	private static final String TOKENIZER = ConfigReader.get("tokenizer", "");
+	private static final String APPROXIMATE = "approx";
+
+	private static final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+	private static volatile HuggingFaceTokenizer tokenizer;
+	private static volatile boolean tokenizerFailed = TOKENIZER.isEmpty();
+
+	/**
+	 * Token counts, throughput and cost of one answer
+	 */
+	public static class Usage {
+		private final int inputTokens;
+		private final int outputTokens;
+		private final long latencyMillis;
+		private final double cost;
+
+		Usage(int inputTokens, int outputTokens, long latencyMillis, double cost) {
+			this.inputTokens = inputTokens;
+			this.outputTokens = outputTokens;
+			this.latencyMillis = latencyMillis;
+			this.cost = cost;
+		}
+
+		public int getInputTokens() {
+			return inputTokens;
+		}
+
+		public int getOutputTokens() {
+			return outputTokens;
+		}
+
+		public long getLatencyMillis() {
+			return latencyMillis;
+		}
+
+		/** output tokens per second of the whole request */
+		public double getTokensPerSecond() {
+			return latencyMillis > 0 ? outputTokens * 1000.0 / latencyMillis : 0;
+		}
+
+		/** USD, 0 when no price is configured for the model */
+		public double getCost() {
+			return cost;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("in=%d out=%d tokens, %d ms, %.1f tokens/s, $%.5f", inputTokens, outputTokens,
+					latencyMillis, getTokensPerSecond(), cost);
+		}
+	}
+
+	/**
+	 * To count the tokens of a question / answer pair, log them for the current test and add them to the totals
+	 *
+	 * @param lang
+	 * 		- language of the question (EN, AR, ...), detected from the text when null
+	 * @param model
+	 * 		- chat model which answered
+	 * @param input
+	 * 		- question
+	 * @param output
+	 * 		- answer
+	 * @param latencyMillis
+	 * 		- time from sending the question to receiving the complete answer
+	 * @return Usage
+	 */
+	public static Usage record(String lang, String model, String input, String output, long latencyMillis) {
+		lang = lang != null && !lang.isEmpty() ? lang.toUpperCase() : detectLanguage(input);
+		model = model != null ? model : "unknown";
+
+		int inputTokens = countTokens(input);
+		int outputTokens = countTokens(output);
+		double cost = (inputTokens * ConfigReader.getDouble("tokenPriceInput." + model, 0)
+				+ outputTokens * ConfigReader.getDouble("tokenPriceOutput." + model, 0)) / 1_000_000;
+		Usage usage = new Usage(inputTokens, outputTokens, latencyMillis, cost);
+
+		aggregates.computeIfAbsent(lang + " / " + model, key -> new Aggregate()).add(usage);
+		Metrics.add("uask_tokens", "Chat tokens by language, model and direction", inputTokens, "lang", lang, "model", model, "direction", "input");
+		Metrics.add("uask_tokens", "Chat tokens by language, model and direction", outputTokens, "lang", lang, "model", model, "direction", "output");
+		Metrics.add("uask_cost_usd", "Chat cost by language and model", cost, "lang", lang, "model", model);
+		Metrics.observe("uask_answer_seconds", "Time from question to complete answer", latencyMillis / 1000.0, "lang", lang, "model", model);
+		Log.event("Tokens (" + lang + ", " + model + "): " + usage);
+		return usage;
+	}
+
+	/**
+	 * To count tokens with the configured tokenizer (estimate when it is not available)
+	 *
+	 * @param text
+	 * @return int
+	 */
+	public static int countTokens(String text) {
+		if (text == null || text.isEmpty()) return 0;
+		HuggingFaceTokenizer loaded = tokenizer();
+		if (loaded == null) {
+			return (text.length() + 3) / 4;
+		}
+		return loaded.encode(text, false, false).getIds().length;
+	}
+
+	/**
+	 * To get the name of the tokenizer in use ("approx" when counts are estimated)
+	 *
+	 * @return String
+	 */
+	public static String getTokenizerName() {
+		return tokenizer() != null ? TOKENIZER : APPROXIMATE;
+	}
+
+	/**
+	 * To get questions, tokens, throughput and cost per language and model
+	 *
+	 * @return String, one line per language / model
+	 */
+	public static String getSummary() {
+		StringBuilder sb = new StringBuilder("tokenizer=" + getTokenizerName());
+		new TreeMap<>(aggregates).forEach((key, aggregate) -> sb.append(String.format(
+				"%n  %-32s questions=%d in=%d out=%d tokens, %.1f tokens/s, $%.5f total, $%.5f per question",
+				key, aggregate.questions, aggregate.inputTokens, aggregate.outputTokens, aggregate.getTokensPerSecond(),
+				aggregate.cost, aggregate.questions > 0 ? aggregate.cost / aggregate.questions : 0)));
+		return sb.toString();
+	}
+
+	/**
+	 * AR when the text is mostly Arabic script, else EN
+	 */
+	static String detectLanguage(String text) {
+		if (text == null) return "EN";
+		int arabic = 0, letters = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!Character.isLetter(c)) continue;
+			letters++;
+			if (Character.UnicodeBlock.of(c) == Character.UnicodeBlock.ARABIC) arabic++;
+		}
+		return letters > 0 && arabic * 2 >= letters ? "AR" : "EN";
+	}
+
+	private static HuggingFaceTokenizer tokenizer() {
+		if (tokenizer == null && !tokenizerFailed) {
+			synchronized (TokenAccounting.class) {
+				if (tokenizer == null && !tokenizerFailed) {
+					try {
+						HuggingFaceTokenizer.Builder builder = HuggingFaceTokenizer.builder()
+								.optAddSpecialTokens(false)
+								.optTruncation(false);
+						Path path = Paths.get(TOKENIZER);
+						if (Files.exists(path)) {
+							builder.optTokenizerPath(path);
+						} else {
+							builder.optTokenizerName(TOKENIZER);
+						}
+						tokenizer = builder.build();
+						log.info("Token counts use tokenizer " + TOKENIZER);
+					} catch (Exception | UnsatisfiedLinkError e) {
+						tokenizerFailed = true;
+						log.warn("Tokenizer " + TOKENIZER + " not available, estimating 4 characters per token: " + e.getMessage());
+					}
+				}
+			}
+		}
+		return tokenizer;
+	}
+
+	/**
+	 * Totals of one language / model
+	 */
+	private static class Aggregate {
+		private long questions;
+		private long inputTokens;
+		private long outputTokens;
+		private long latencyMillis;
+		private double cost;
+
+		synchronized void add(Usage usage) {
+			questions++;
+			inputTokens += usage.inputTokens;
+			outputTokens += usage.outputTokens;
+			latencyMillis += usage.latencyMillis;
+			cost += usage.cost;
+		}
+
+		synchronized double getTokensPerSecond() {
+			return latencyMillis > 0 ? outputTokens * 1000.0 / latencyMillis : 0;
+		}
+	}
+}
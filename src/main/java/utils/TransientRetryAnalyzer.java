@@ -0,0 +1,132 @@
+package utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+/**
+ * Retries a failed test only when the failure is transient: a Selenium timeout, a stale element, an I/O error,
+ * an open circuit breaker or an HTTP 429/5xx from the chat backend. Assertion failures on scored answers and
+ * any other failure are reported right away.
+ * <p>
+ * Most tests turn exceptions into Log.fail, so the cause does not survive in the thrown AssertionError. The
+ * places where transient failures happen (ChatPage, APIUtils, ElementCache) therefore mark the running test
+ * with {@link #markTransient(String)}, and CascadeScorer marks a failed score of a non-empty answer with
+ * {@link #markContentFailure()}; a content failure always wins. Retries (retryMaxAttempts per test) are
+ * counted per test as a flakiness metric. Attached to every test by RetryListener.
+ * </p>
+ */
+public class TransientRetryAnalyzer implements IRetryAnalyzer {
+
+	private static final String TRANSIENT_CAUSE = "transientCause";
+	private static final String CONTENT_FAILURE = "contentFailure";
+	private static final int MAX_ATTEMPTS = ConfigReader.getInt("retryMaxAttempts", 1);
+
+	private static final Map<String, AtomicInteger> retries = new ConcurrentHashMap<>();
+	private static final Map<String, AtomicInteger> passedAfterRetry = new ConcurrentHashMap<>();
+	// invocations (method, parameters, instance) with a retry pending, so a pass is only counted for the retried one
+	private static final Set<String> retriedInvocations = ConcurrentHashMap.newKeySet();
+
+	private int attempts;
+
+	@Override
+	public boolean retry(ITestResult result) {
+		String cause = transientCause(result);
+		if (cause == null || attempts >= MAX_ATTEMPTS) {
+			retriedInvocations.remove(invocation(result));
+			return false;
+		}
+		attempts++;
+		String test = testName(result);
+		retries.computeIfAbsent(test, key -> new AtomicInteger()).incrementAndGet();
+		retriedInvocations.add(invocation(result));
+		Metrics.increment("uask_test_retries", "Retries of tests after a transient failure", "test", test);
+		Log.warnEvent("Transient failure (" + cause + "), retrying " + attempts + "/" + MAX_ATTEMPTS);
+		return true;
+	}
+
+	/**
+	 * To mark the running test as failed for a transient reason (no-op outside a test)
+	 *
+	 * @param cause
+	 * 		- short description, e.g. "HTTP 503 from /api/chat/completed"
+	 */
+	public static void markTransient(String cause) {
+		ITestResult result = Reporter.getCurrentTestResult();
+		if (result != null && result.getAttribute(TRANSIENT_CAUSE) == null) {
+			result.setAttribute(TRANSIENT_CAUSE, cause);
+		}
+	}
+
+	/**
+	 * To mark that the running test scored a real answer as wrong, which is never retried
+	 */
+	public static void markContentFailure() {
+		ITestResult result = Reporter.getCurrentTestResult();
+		if (result != null) {
+			result.setAttribute(CONTENT_FAILURE, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * To count a test which passed after being retried (called by RetryListener)
+	 *
+	 * @param result
+	 */
+	static void recordPassAfterRetry(ITestResult result) {
+		if (retriedInvocations.remove(invocation(result))) {
+			String test = testName(result);
+			passedAfterRetry.computeIfAbsent(test, key -> new AtomicInteger()).incrementAndGet();
+			Metrics.increment("uask_test_flaky", "Tests which passed only after a retry", "test", test);
+		}
+	}
+
+	/**
+	 * To get retries and passes after retry per test
+	 *
+	 * @return String, one test per line, "none" without retries
+	 */
+	public static String getSummary() {
+		if (retries.isEmpty()) return "none";
+		StringBuilder sb = new StringBuilder();
+		new TreeMap<>(retries).forEach((test, count) -> sb.append(String.format("%n  %-60s retries=%d passedAfterRetry=%d",
+				test, count.get(), passedAfterRetry.getOrDefault(test, new AtomicInteger()).get())));
+		return sb.toString();
+	}
+
+	/**
+	 * Transient cause of the failure, null when it must not be retried
+	 */
+	static String transientCause(ITestResult result) {
+		if (Boolean.TRUE.equals(result.getAttribute(CONTENT_FAILURE)) || TimeBudget.getExceeded(result) != null) {
+			return null;
+		}
+		for (Throwable cause = result.getThrowable(); cause != null; cause = cause.getCause()) {
+			if (cause instanceof TimeoutException || cause instanceof StaleElementReferenceException
+					|| cause instanceof IOException || cause instanceof ApiResilience.CircuitOpenException) {
+				return cause.getClass().getSimpleName();
+			}
+		}
+		Object marked = result.getAttribute(TRANSIENT_CAUSE);
+		return marked != null ? marked.toString() : null;
+	}
+
+	private static String testName(ITestResult result) {
+		return result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName();
+	}
+
+	// one data provider row of one test instance
+	private static String invocation(ITestResult result) {
+		return testName(result) + Arrays.deepToString(result.getParameters()) + "@" + System.identityHashCode(result.getInstance());
+	}
+}
@@ -4,22 +4,18 @@ import java.time.Duration;
 import java.util.List;
 import java.util.function.Function;
 
-import org.openqa.selenium.JavascriptExecutor;
-import org.openqa.selenium.NoSuchElementException;
-import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.*;
 
 public class UAskUtils {
 
-	private static final int DEFAULT_WAIT = 10;   // max wait time
-    private static final int POLLING_INTERVAL = 500; // ms
+	private static final int DEFAULT_WAIT = ConfigReader.getInt("defaultWait", 10);   // max wait time in seconds
     
     protected WebDriver driver;
     
     /**
-     * Generic wait using FluentWait until the given condition returns true
+     * Generic wait with adaptive polling (see AdaptiveWait) until the given condition returns true
      * 
      * @param driver
      * 		- WebDriver instance
@@ -27,13 +23,7 @@ public class UAskUtils {
      * 		- Lambda that returns boolean (page or element ready)
      */
     public static void waitForPageLoad(WebDriver driver, Function<WebDriver, Boolean> condition) {
-        Wait<WebDriver> wait = new FluentWait<>(driver)
-                .withTimeout(Duration.ofSeconds(DEFAULT_WAIT))
-                .pollingEvery(Duration.ofMillis(POLLING_INTERVAL))
-                .ignoring(NoSuchElementException.class)
-                .ignoring(StaleElementReferenceException.class);
-
-        wait.until(condition);
+        AdaptiveWait.until(driver, "pageLoad:" + getCaller(), condition, Duration.ofSeconds(DEFAULT_WAIT));
     }
     
     /**
@@ -63,7 +53,7 @@ public class UAskUtils {
      */
     public static boolean waitForElement(WebDriver driver, WebElement element, Duration timeout) {
         try {
-            new WebDriverWait(driver, timeout).until(ExpectedConditions.visibilityOf(element));
+            AdaptiveWait.until(driver, "visible:" + element, ExpectedConditions.visibilityOf(element), timeout);
             return true;
         } catch (Exception e) {
             return false;
@@ -85,9 +75,9 @@ public class UAskUtils {
     
     public static boolean waitForListElement(WebDriver driver, List<WebElement> elements, int maxWait) {
 		boolean statusOfElementToBeReturned = false;
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(maxWait));
 		try {
-			wait.until(ExpectedConditions.visibilityOfAllElements(elements));
+			// a list proxy has no cheap toString, so the calling page method identifies the wait
+			AdaptiveWait.until(driver, "visibleList:" + getCaller(), ExpectedConditions.visibilityOfAllElements(elements), Duration.ofSeconds(maxWait));
 			statusOfElementToBeReturned = true;
 		} catch (Exception ex) {
 			statusOfElementToBeReturned = false;
@@ -104,10 +94,11 @@ public class UAskUtils {
      * 		   true if scrollbar is displayed
      */
     public static boolean verifyScrollExistForElement(final WebDriver driver, WebElement element){
- 		JavascriptExecutor js = (JavascriptExecutor) driver;
- 		double clientHeight = Double.valueOf(js.executeScript("return arguments[0].clientHeight;", element).toString());
- 		double scrollHeight = Double.valueOf(js.executeScript("return arguments[0].scrollHeight;", element).toString());
- 		return clientHeight < scrollHeight;
+ 		DomProbe.Result probe = DomProbe.on(driver)
+ 				.property("clientHeight", DomProbe.element(element), "clientHeight")
+ 				.property("scrollHeight", DomProbe.element(element), "scrollHeight")
+ 				.run();
+ 		return probe.getDouble("clientHeight") < probe.getDouble("scrollHeight");
     }
     
     /**
@@ -123,12 +114,41 @@ public class UAskUtils {
      * 		- true if element disappears within timeout, false otherwise
      */
     public static boolean waitForElementToDisappear(WebDriver driver, WebElement element, int timeout) {
+        return waitForElementToDisappear(driver, element, timeout, true);
+    }
+
+    /**
+     * To wait until the given element disappears from the page
+     *
+     * @param driver
+     * 		-	WebDriver instance
+     * @param element
+     * 		- WebElement to wait for disappearance
+     * @param timeout
+     * 		- Maximum wait time in seconds
+     * @param learnTimeout
+     * 		- false to always wait the full timeout (e.g. loading spinner of the LLM answer)
+     * @return
+     * 		- true if element disappears within timeout, false otherwise
+     */
+    public static boolean waitForElementToDisappear(WebDriver driver, WebElement element, int timeout, boolean learnTimeout) {
         try {
-            WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-            return wait.until(ExpectedConditions.invisibilityOf(element));
+            return AdaptiveWait.until(driver, "invisible:" + element, ExpectedConditions.invisibilityOf(element),
+                    Duration.ofSeconds(timeout), learnTimeout);
         } catch (Exception e) {
             System.out.println("Element did not disappear: " + element);
             return false;
         }
     }
+
+    /**
+     * To get the page method which called the wait (e.g. ChatPage.getLastAIMessage)
+     */
+    private static String getCaller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> !f.getClassName().equals(UAskUtils.class.getName()))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+                .orElse("unknown"));
+    }
 }
@@ -0,0 +1,238 @@
+package utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+/**
+ * Audit of every explicit wait of the run (all UAskUtils and ChatPage waits go through AdaptiveWait).
+ * <p>
+ * Each wait is recorded with its key (locator or condition), the timeout the caller configured, the timeout
+ * actually used, the time spent and the outcome. At suite end the waits are aggregated per key into a
+ * "top waits" table ordered by total time spent, which flags timeouts that are oversized: configured
+ * waitAuditOversizeFactor or more times the p95 of the waits that were met. The time is also written as a
+ * flame graph in folded-stack format (test;phase;wait time_ms), which flamegraph.pl or speedscope render.
+ * </p>
+ */
+public class WaitAudit {
+
+	private static final Logger log = LogManager.getLogger(WaitAudit.class);
+
+	public static final String TABLE_FILE = "test-output/wait-audit.txt";
+	public static final String FLAME_FILE = "test-output/wait-flame.folded";
+
+	private static final int TOP = ConfigReader.getInt("waitAuditTop", 20);
+	private static final double OVERSIZE_FACTOR = ConfigReader.getDouble("waitAuditOversizeFactor", 5.0);
+
+	private static final Map<String, KeyStats> waits = new ConcurrentHashMap<>();
+	private static final Map<String, long[]> stacks = new ConcurrentHashMap<>();
+
+	/**
+	 * Waits of one key
+	 */
+	private static class KeyStats {
+		private final String key;
+		private final List<Long> metMillis = new ArrayList<>();
+		private final Map<String, Integer> outcomes = new TreeMap<>();
+		private long totalMillis;
+		private long maxMillis;
+		private long configuredMillis;
+		private long effectiveMillis = Long.MAX_VALUE;
+
+		KeyStats(String key) {
+			this.key = key;
+		}
+
+		int count() {
+			return outcomes.values().stream().mapToInt(Integer::intValue).sum();
+		}
+
+		long p95() {
+			List<Long> sorted = new ArrayList<>(metMillis);
+			Collections.sort(sorted);
+			return ShardReport.percentile(sorted, 95);
+		}
+
+		boolean oversized() {
+			return !metMillis.isEmpty() && outcomes.size() == 1 && configuredMillis >= OVERSIZE_FACTOR * Math.max(1, p95());
+		}
+	}
+
+	/**
+	 * To record a finished wait (called by AdaptiveWait)
+	 *
+	 * @param key
+	 * 		- locator or condition waited for
+	 * @param configuredMillis
+	 * 		- timeout asked for by the caller
+	 * @param effectiveMillis
+	 * 		- timeout used, after learning and the time budget
+	 * @param elapsedMillis
+	 * 		- time spent waiting
+	 * @param outcome
+	 * 		- met, timed out, budget exceeded or error
+	 */
+	public static void record(String key, long configuredMillis, long effectiveMillis, long elapsedMillis, String outcome) {
+		KeyStats stats = waits.computeIfAbsent(key, KeyStats::new);
+		synchronized (stats) {
+			stats.outcomes.merge(outcome, 1, Integer::sum);
+			stats.totalMillis += elapsedMillis;
+			stats.maxMillis = Math.max(stats.maxMillis, elapsedMillis);
+			stats.configuredMillis = Math.max(stats.configuredMillis, configuredMillis);
+			stats.effectiveMillis = Math.min(stats.effectiveMillis, effectiveMillis);
+			if ("met".equals(outcome)) {
+				stats.metMillis.add(elapsedMillis);
+			}
+		}
+
+		String phase = TimeBudget.getPhase();
+		String stack = frame(testName()) + ";" + frame(phase != null ? phase : "test") + ";" + frame(key);
+		long[] millis = stacks.computeIfAbsent(stack, s -> new long[1]);
+		synchronized (millis) {
+			millis[0] += elapsedMillis;
+		}
+	}
+
+	/**
+	 * To get the top waits by total time spent
+	 *
+	 * @return String, one wait per line, "none" if no wait was recorded
+	 */
+	public static String getSummary() {
+		List<KeyStats> top = top();
+		if (top.isEmpty()) return "none";
+		StringBuilder sb = new StringBuilder(String.format("%n  %10s %6s %8s %8s %8s %10s %10s  %-24s %s",
+				"total ms", "count", "p95 ms", "max ms", "share", "timeout", "used", "outcomes", "wait"));
+		long total = waits.values().stream().mapToLong(stats -> stats.totalMillis).sum();
+		for (KeyStats stats : top) {
+			synchronized (stats) {
+				sb.append(String.format("%n  %10d %6d %8d %8d %7.1f%% %10d %10d  %-24s %s%s",
+						stats.totalMillis, stats.count(), stats.p95(), stats.maxMillis,
+						total > 0 ? 100.0 * stats.totalMillis / total : 0, stats.configuredMillis, stats.effectiveMillis,
+						outcomes(stats), stats.key, stats.oversized() ? "  [timeout oversized]" : ""));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * To get the time spent in waits per test and phase as an indented tree, largest first
+	 *
+	 * @return String, "none" if no wait was recorded
+	 */
+	public static String getFlameSummary() {
+		Map<String, Map<String, Long>> tree = new TreeMap<>();
+		stacks.forEach((stack, millis) -> {
+			String[] frames = stack.split(";", 3);
+			tree.computeIfAbsent(frames[0], test -> new TreeMap<>()).merge(frames[1] + ";" + frames[2], millis[0], Long::sum);
+		});
+		if (tree.isEmpty()) return "none";
+
+		long total = stacks.values().stream().mapToLong(millis -> millis[0]).sum();
+		StringBuilder sb = new StringBuilder();
+		tree.entrySet().stream()
+				.sorted(Comparator.comparingLong((Map.Entry<String, Map<String, Long>> test) -> sum(test.getValue())).reversed())
+				.forEach(test -> {
+					sb.append(bar(test.getKey(), sum(test.getValue()), total, ""));
+					test.getValue().entrySet().stream()
+							.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+							.forEach(wait -> sb.append(bar(wait.getKey().replace(";", " > "), wait.getValue(), total, "  ")));
+				});
+		return sb.toString();
+	}
+
+	/**
+	 * To write the top waits table and the folded stacks of the run
+	 */
+	public static void write() {
+		if (waits.isEmpty()) return;
+		new File(TABLE_FILE).getParentFile().mkdirs();
+		try (Writer table = new FileWriter(TABLE_FILE); Writer flame = new FileWriter(FLAME_FILE)) {
+			table.write("Top waits by total time:" + getSummary() + System.lineSeparator() + System.lineSeparator()
+					+ "Wait time per test and phase:" + getFlameSummary() + System.lineSeparator());
+			for (Map.Entry<String, long[]> stack : new TreeMap<>(stacks).entrySet()) {
+				flame.write(stack.getKey() + " " + stack.getValue()[0] + System.lineSeparator());
+			}
+		} catch (IOException e) {
+			log.warn("Failed to write wait audit: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * To build the top waits as an HTML table for the report
+	 *
+	 * @return String, empty if no wait was recorded
+	 */
+	public static String getHtmlTable() {
+		List<KeyStats> top = top();
+		if (top.isEmpty()) return "";
+		StringBuilder html = new StringBuilder("<table border='1' style='border-collapse:collapse'><tr><th>Wait</th>"
+				+ "<th>Total ms</th><th>Count</th><th>p95 ms</th><th>Max ms</th><th>Timeout ms</th><th>Used ms</th><th>Outcomes</th></tr>");
+		for (KeyStats stats : top) {
+			synchronized (stats) {
+				html.append("<tr").append(stats.oversized() ? " style='background:#fff3cd' title='timeout oversized'" : "").append(">")
+						.append("<td>").append(escape(stats.key)).append("</td><td>").append(stats.totalMillis)
+						.append("</td><td>").append(stats.count()).append("</td><td>").append(stats.p95())
+						.append("</td><td>").append(stats.maxMillis).append("</td><td>").append(stats.configuredMillis)
+						.append("</td><td>").append(stats.effectiveMillis).append("</td><td>").append(outcomes(stats))
+						.append("</td></tr>");
+			}
+		}
+		return html.append("</table>").toString();
+	}
+
+	private static List<KeyStats> top() {
+		List<KeyStats> all = new ArrayList<>(waits.values());
+		all.sort(Comparator.comparingLong((KeyStats stats) -> stats.totalMillis).reversed());
+		return all.subList(0, Math.min(TOP, all.size()));
+	}
+
+	private static String outcomes(KeyStats stats) {
+		StringBuilder sb = new StringBuilder();
+		stats.outcomes.forEach((outcome, count) -> sb.append(sb.length() > 0 ? ", " : "").append(outcome).append("=").append(count));
+		return sb.toString();
+	}
+
+	private static String bar(String label, long millis, long total, String indent) {
+		int width = total > 0 ? (int) Math.round(40.0 * millis / total) : 0;
+		return String.format("%n  %-40s %8d ms  %s%s", repeat('#', width), millis, indent, label);
+	}
+
+	private static String repeat(char c, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) sb.append(c);
+		return sb.toString();
+	}
+
+	private static long sum(Map<String, Long> values) {
+		return values.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	private static String testName() {
+		ITestResult result = Reporter.getCurrentTestResult();
+		return result != null ? result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName()
+				: "(outside tests)";
+	}
+
+	// ';' separates the frames of a folded stack, the count follows the last space
+	private static String frame(String name) {
+		return name.replace(';', ',');
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
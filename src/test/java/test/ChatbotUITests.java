@@ -3,9 +3,14 @@ package test;
 import base.BaseTest;
 import org.testng.annotations.Test;
 import pages.ChatPage;
+import pages.ChatTabPool;
 import pages.LoginPage;
 import utils.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 
 public class ChatbotUITests extends BaseTest {
 	
@@ -18,10 +23,10 @@ public class ChatbotUITests extends BaseTest {
 		Log.message("tc01VerifyChatWidgetLoadsOnDesktop: Verify that the chat widget is visible and accessible on both desktop.");
 		
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 	        loginPage.clickOnLoginWithEmailLink();
 	        loginPage.loginToUAskWebApp(userName, password);
-	        ChatPage chatPage = new ChatPage(driver);
+	        ChatPage chatPage = new ChatPage(getDriver());
 	        Log.assertThat(chatPage.isPageLoaded(),
 	        		"Chat widget loaded correctly on desktop",
 	        		"Chat widget not loaded correctly on desktop");
@@ -34,10 +39,10 @@ public class ChatbotUITests extends BaseTest {
 	public void tc02VerifyChatWidgetLoadsOnDevice() {
 		Log.message("tc02VerifyChatWidgetLoadsOnMobile: Verify that the chat widget is visible and accessible on both Mobile device.");
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			Log.assertThat(chatPage.isPageLoaded(), 
 					"Chat widget loaded correctly on mobile device",
 					"Chat widget not loaded correctly on mobile device");
@@ -51,10 +56,10 @@ public class ChatbotUITests extends BaseTest {
 		Log.message("tc03VerifyUserCanSendMessage: Verify users can type and send messages through the input box");
 	    
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 	        loginPage.clickOnLoginWithEmailLink();
 	        loginPage.loginToUAskWebApp(userName, password);
-	        ChatPage chatPage = new ChatPage(driver);
+	        ChatPage chatPage = new ChatPage(getDriver());
 	        TestData question = JsonUtils.getQuestionById(filePath, "UI_EN_01");
 	        String expectedResponse = question.getExpected();
 	        Double threshold = question.getThreshold();
@@ -64,7 +69,7 @@ public class ChatbotUITests extends BaseTest {
 	            chatPage.enterChatInput(Quesion);
 	            chatPage.clickOnButtonSend();
 
-	            String actualResponse = chatPage.getLastAIMessage(driver);
+	            String actualResponse = chatPage.getLastAIMessage(getDriver());
 	            Log.assertThat(TextUtils.isResponseValid(expectedResponse, actualResponse, threshold),
 	            		"User can send messages via input box" + "<br>\n Question: " + Quesion + "</br>",
 	            		"User not able to send messages via input box"  + "<br>\n Question: " + Quesion + "</br>");
@@ -80,14 +85,15 @@ public class ChatbotUITests extends BaseTest {
 
 		String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			TestData question = JsonUtils.getQuestionById(filePath, "UI_EN_02");
 
 			userQuestion = question.getInput();
@@ -98,9 +104,11 @@ public class ChatbotUITests extends BaseTest {
 				chatPage.enterChatInput(userQuestion);
 				chatPage.clickOnButtonSend();
 
-				actualResponse = chatPage.getLastAIMessage(driver);
-				similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-				isValid = similarityScore >= threshold;
+				actualResponse = chatPage.getLastAIMessage(getDriver());
+				CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, question.getLang());
+				similarityScore = score.getValue();
+				isValid = score.isPass();
+				decidedBy = score.getTier();
 				
 				Log.assertThat(isValid, 
 						"User can see AI-generated responses are displayed correctly.",
@@ -109,7 +117,7 @@ public class ChatbotUITests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
 		}
 	}
 
@@ -120,16 +128,18 @@ public class ChatbotUITests extends BaseTest {
 		String userQuestion = "", expectedResponse = "", actualResponse = "";
 		String userQuestionInArabic = "", expectedResponseInArabic = "", actualResponseInArabic = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		Double thresholdInArabic, similarityScoreInArabic = 0.0 ;
+		String decidedByInArabic = "";
 		boolean isValid = false;
 		boolean isValidInArabic = false;
 		
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			
 			TestData question = JsonUtils.getQuestionById(filePath, "UI_EN_02");
 			userQuestion = question.getInput();
@@ -139,10 +149,12 @@ public class ChatbotUITests extends BaseTest {
 			if (question != null) {
 				chatPage.enterChatInput(userQuestion);
 				chatPage.clickOnButtonSend();
-				actualResponse = chatPage.getLastAIMessage(driver);
+				actualResponse = chatPage.getLastAIMessage(getDriver());
 				
-				similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);;
-				isValid = similarityScore >= threshold;
+				CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, question.getLang());
+				similarityScore = score.getValue();
+				isValid = score.isPass();
+				decidedBy = score.getTier();
 				
 				Log.assertThat(isValid, 
 						"User can see AI-generated responses are displayed correctly.",
@@ -161,10 +173,12 @@ public class ChatbotUITests extends BaseTest {
 			if (question != null) {
 				chatPage.enterChatInput(userQuestionInArabic);
 				chatPage.clickOnButtonSend();
-				actualResponseInArabic = chatPage.getLastAIMessage(driver);
+				actualResponseInArabic = chatPage.getLastAIMessage(getDriver());
 				
-				similarityScoreInArabic = TextUtils.getSemanticSimilarity(expectedResponseInArabic, actualResponseInArabic);
-				isValidInArabic = similarityScoreInArabic >= thresholdInArabic;
+				CascadeScorer.Score scoreInArabic = CascadeScorer.score(expectedResponseInArabic, actualResponseInArabic, thresholdInArabic, question.getLang());
+				similarityScoreInArabic = scoreInArabic.getValue();
+				isValidInArabic = scoreInArabic.isPass();
+				decidedByInArabic = scoreInArabic.getTier();
 				
 				Log.assertThat(isValidInArabic, 
 						"User can see AI-generated responses are displayed correctly.",
@@ -177,8 +191,8 @@ public class ChatbotUITests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
-			ChatReportUtils.logResultHtml(userQuestionInArabic, expectedResponseInArabic, actualResponseInArabic, similarityScoreInArabic, isValidInArabic);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
+			ChatReportUtils.logResultHtml(userQuestionInArabic, expectedResponseInArabic, actualResponseInArabic, similarityScoreInArabic, isValidInArabic, decidedByInArabic);
 		}
 	}
 
@@ -187,11 +201,11 @@ public class ChatbotUITests extends BaseTest {
 		Log.message("tc06VerifyInputClearedAfterSend: Verify that the input box is cleared after sending a message.");
 
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			TestData question = JsonUtils.getQuestionById(filePath, "UI_EN_03");
 			if (question != null) {
 				chatPage.enterChatInput(question.getInput());
@@ -212,11 +226,11 @@ public class ChatbotUITests extends BaseTest {
 		Log.message("tc07VerifyScrollAndAccessibility: Verify that scrolling works correctly and the chat widget is accessible.");
 
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			TestData question;
 
 			// Send multiple messages to check scroll
@@ -224,7 +238,7 @@ public class ChatbotUITests extends BaseTest {
 				question = JsonUtils.getQuestionById(filePath, "UI_EN_0"+i);
 				chatPage.enterChatInput(question.getInput());
 				chatPage.clickOnButtonSend();
-				chatPage.getLastAIMessage(driver);
+				chatPage.getLastAIMessage(getDriver());
 			}
 
 			Log.assertThat(chatPage.verifyScrollExistForResponseContainer(), 
@@ -235,4 +249,39 @@ public class ChatbotUITests extends BaseTest {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		}
 	}
+
+	@Test(priority = 7)
+	public void tc08VerifyConcurrentConversationsInTabs() {
+		Log.message("tc08VerifyConcurrentConversationsInTabs: Verify that several conversations can run side by side in one browser.");
+
+		ChatTabPool tabPool = null;
+		try {
+			LoginPage loginPage = new LoginPage(getDriver());
+			loginPage.clickOnLoginWithEmailLink();
+			loginPage.loginToUAskWebApp(userName, password);
+
+			List<TestData> questions = new ArrayList<>();
+			for (int i = 5; i < 8; i++) {
+				questions.add(JsonUtils.getQuestionById(filePath, "UI_EN_0" + i));
+			}
+
+			tabPool = new ChatTabPool(getDriver(), ConfigReader.getInt("chatTabs", 3));
+			List<String> answers = tabPool.askAll(questions.stream().map(TestData::getInput).collect(Collectors.toList()), 120);
+
+			for (int i = 0; i < questions.size(); i++) {
+				TestData question = questions.get(i);
+				String actualResponse = answers.get(i);
+				CascadeScorer.Score score = CascadeScorer.score(question.getExpected(), actualResponse, question.getThreshold(), question.getLang());
+				ChatReportUtils.logResultHtml(question.getInput(), question.getExpected(), actualResponse, score.getValue(),
+						score.isPass(), score.getTier());
+				Log.assertThat(score.isPass(),
+						"Answer received in its own tab for: " + question.getInput(),
+						"Answer missing or mixed up for: " + question.getInput());
+			}
+		} catch (Exception e) {
+			Log.fail("Error while validating concurrent conversations: " + e.getMessage());
+		} finally {
+			if (tabPool != null) tabPool.close();
+		}
+	}
 }
@@ -0,0 +1,170 @@
+package test;
+
+import base.BaseTest;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import pages.ChatPage;
+import pages.LoginPage;
+import utils.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data driven regression over the whole question corpus. Each data provider only returns the
+ * questions of this shard (-DshardIndex=i -DshardCount=n), so the corpus can be spread over JVMs/machines.
+ */
+public class CorpusRegressionTests extends BaseTest {
+
+	String userName = ConfigReader.get("username");
+	String password = ConfigReader.get("password");
+	String filePath = "src/main/resources/test-data.json";
+
+	private String token;
+	private String sessionId;
+
+	// apiReuseChat: questions of a thread are appended to one chat (new chat after apiReuseChatMaxTurns)
+	private final boolean reuseChat = ConfigReader.getBoolean("apiReuseChat", false);
+	private final int reuseChatMaxTurns = ConfigReader.getInt("apiReuseChatMaxTurns", 10);
+	private final ThreadLocal<ConversationSession> conversation = new ThreadLocal<>();
+
+	@BeforeClass
+	public void setupToken() {
+		token = APIUtils.getAccessToken(userName, password);
+		sessionId = APIUtils.getSessionId(userName, password);
+	}
+
+	@DataProvider(name = "uiQuestions")
+	public Object[][] uiQuestions() {
+		return toDataProvider(JsonUtils.getAllUIQuestions(filePath));
+	}
+
+	@DataProvider(name = "apiQuestions")
+	public Object[][] apiQuestions() {
+		return toDataProvider(JsonUtils.getAllApiQuestions(filePath));
+	}
+
+	@DataProvider(name = "securityQuestions")
+	public Object[][] securityQuestions() {
+		return toDataProvider(JsonUtils.getAllSecurityTests(filePath));
+	}
+
+	@Test(dataProvider = "uiQuestions")
+	public void tc01VerifyUIQuestion(TestData question) {
+		Log.message("tc01VerifyUIQuestion: " + question.getId());
+		verifyInChat(question, question.getExpected());
+	}
+
+	@Test(dataProvider = "apiQuestions")
+	public void tc02VerifyAPIQuestion(TestData question) {
+		Log.message("tc02VerifyAPIQuestion: " + question.getId());
+
+		String actualResponse = "";
+		Double similarityScore = 0.0;
+		String decidedBy = "";
+		boolean isValid = false;
+
+		try {
+			if (reuseChat) {
+				actualResponse = askInSharedChat(question);
+			} else {
+				Map<String, String> chatData = APIUtils.createNewChat(token, question.getInput());
+				Map<String, String> responseData = APIUtils.getAIResponse(token, sessionId, chatData.get("chatId"),
+						chatData.get("userMessageId"), question.getInput(), question.getActual());
+				actualResponse = responseData.get("assistantResponse");
+			}
+
+			CascadeScorer.Score score = CascadeScorer.score(question.getExpected(), actualResponse, question.getThreshold(), question.getLang());
+			similarityScore = score.getValue();
+			isValid = score.isPass();
+			decidedBy = score.getTier();
+
+			Log.assertThat(isValid,
+					question.getId() + ": response matches the expected answer",
+					question.getId() + ": response does not match the expected answer");
+		} catch (Exception e) {
+			Log.fail("Error while validating semantic similarity: " + e.getMessage());
+		} finally {
+			ChatReportUtils.logResultHtml(question.getInput(), question.getExpected(), actualResponse, similarityScore, isValid, decidedBy);
+			logSimilarResponses(question.getId(), actualResponse);
+			TextUtils.archiveResponse(question.getId(), actualResponse);
+		}
+	}
+
+	@Test(dataProvider = "securityQuestions")
+	public void tc03VerifySecurityQuestion(TestData question) {
+		Log.message("tc03VerifySecurityQuestion: " + question.getId());
+		verifyInChat(question, question.getExpectedFallback());
+	}
+
+	private void verifyInChat(TestData question, String expectedResponse) {
+		String actualResponse = "";
+		Double similarityScore = 0.0;
+		String decidedBy = "";
+		boolean isValid = false;
+
+		try {
+			LoginPage loginPage = new LoginPage(getDriver());
+			loginPage.clickOnLoginWithEmailLink();
+			loginPage.loginToUAskWebApp(userName, password);
+
+			ChatPage chatPage = new ChatPage(getDriver());
+			chatPage.enterChatInput(question.getInput());
+			chatPage.clickOnButtonSend();
+
+			actualResponse = chatPage.getLastAIMessage(getDriver());
+			CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, question.getThreshold(), question.getLang());
+			similarityScore = score.getValue();
+			isValid = score.isPass();
+			decidedBy = score.getTier();
+
+			Log.assertThat(isValid,
+					question.getId() + ": response matches the expected answer",
+					question.getId() + ": response does not match the expected answer");
+		} catch (Exception e) {
+			Log.fail("Error while validating semantic similarity: " + e.getMessage());
+		} finally {
+			ChatReportUtils.logResultHtml(question.getInput(), expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
+			logSimilarResponses(question.getId(), actualResponse);
+			TextUtils.archiveResponse(question.getId(), actualResponse);
+		}
+	}
+
+	/**
+	 * To log the archived answers closest to this one (responseArchive = true), e.g. the answer of the same
+	 * question in earlier runs or near-duplicate answers to other questions
+	 */
+	private void logSimilarResponses(String id, String response) {
+		if (!ConfigReader.getBoolean("responseArchive", false) || response == null || response.isEmpty()) {
+			return;
+		}
+		try {
+			List<ResponseIndex.Neighbor> similar = TextUtils.findSimilarResponses(response, 3);
+			if (!similar.isEmpty()) {
+				Log.event("Closest archived answers to " + id + ": " + similar);
+			}
+		} catch (Exception e) {
+			log.warn("Could not search the response archive for " + id + ": " + e.getMessage());
+		}
+	}
+
+	private String askInSharedChat(TestData question) {
+		ConversationSession session = conversation.get();
+		if (session == null || session.getTurns().size() >= reuseChatMaxTurns) {
+			if (session != null) Log.event(session.getGrowthSummary());
+			session = new ConversationSession(token, sessionId);
+			conversation.set(session);
+		}
+		return session.ask(question.getInput(), question.getActual()).getAnswer();
+	}
+
+	private Object[][] toDataProvider(List<TestData> questions) {
+		if (questions == null) return new Object[0][];
+		Object[][] data = new Object[questions.size()][];
+		for (int i = 0; i < questions.size(); i++) {
+			data[i] = new Object[]{questions.get(i)};
+		}
+		return data;
+	}
+}
@@ -0,0 +1,99 @@
+package test;
+
+import base.BaseTest;
+import com.aventstack.extentreports.ExtentTest;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+import utils.ChatReportUtils;
+import utils.Log;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stress test for the BaseTest lifecycle under high parallelism (see testng-stress.xml).
+ * Runs without a browser: createDriver returns a stub WebDriver which remembers its owning thread.
+ */
+public class ParallelLifecycleStressTests extends BaseTest {
+
+	private static final Map<WebDriver, Thread> driverOwners = new ConcurrentHashMap<>();
+	private static final Set<WebDriver> closedDrivers = ConcurrentHashMap.newKeySet();
+	private static final Set<ExtentTest> reportNodes = ConcurrentHashMap.newKeySet();
+
+	@Override
+	protected WebDriver createDriver(String device) {
+		WebDriver[] self = new WebDriver[1];
+		self[0] = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "quit":
+						closedDrivers.add(self[0]);
+						return null;
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					case "equals":
+						return proxy == args[0];
+					case "toString":
+						return "StubDriver@" + Integer.toHexString(System.identityHashCode(proxy));
+					default:
+						return null;
+					}
+				});
+		driverOwners.put(self[0], Thread.currentThread());
+		return self[0];
+	}
+
+	@Test(invocationCount = 200, threadPoolSize = 32)
+	public void tc01VerifyDriverBoundToThread() {
+		WebDriver driver = getDriver();
+		Log.assertThat(driver != null && driverOwners.get(driver) == Thread.currentThread(),
+				"Driver belongs to the executing thread",
+				"Driver leaked from another thread: " + driver);
+
+		pause();
+		Log.assertThat(getDriver() == driver,
+				"Driver unchanged for the whole test",
+				"Driver replaced by another test while running");
+	}
+
+	@Test(invocationCount = 200, threadPoolSize = 32)
+	public void tc02VerifyReportNodeAndRowsIsolated() {
+		ExtentTest node = Log.getTest();
+		Log.assertThat(node != null && reportNodes.add(node),
+				"Report node is unique to this test",
+				"Report node missing or shared between tests");
+
+		String token = UUID.randomUUID().toString();
+		ChatReportUtils.logResultHtml(token, "expected", "actual", 1.0, true);
+		pause();
+
+		String table = ChatReportUtils.getHtmlTable();
+		int rows = table.split("<tr style='background-color:#d4edda").length - 1;
+		Log.assertThat(table.contains(token) && rows == 1,
+				"Result rows are isolated per test",
+				"Result rows mixed between tests, found " + rows + " rows");
+	}
+
+	@AfterClass(alwaysRun = true)
+	public void verifyAllDriversClosed() {
+		Set<WebDriver> open = ConcurrentHashMap.newKeySet();
+		open.addAll(driverOwners.keySet());
+		open.removeAll(closedDrivers);
+		Log.assertThat(open.isEmpty(),
+				"All " + driverOwners.size() + " drivers were closed",
+				open.size() + " drivers were never closed");
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextInt(1, 20));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
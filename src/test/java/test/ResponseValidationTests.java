@@ -18,6 +18,7 @@ public class ResponseValidationTests extends BaseTest {
     String password = ConfigReader.get("password");
     
     private String token;
+    private String sessionId;
     
     @BeforeClass
     public void setup() {
@@ -32,6 +33,7 @@ public class ResponseValidationTests extends BaseTest {
     	
     	String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
@@ -49,8 +51,10 @@ public class ResponseValidationTests extends BaseTest {
 	        Map<String, String> responseData = APIUtils.getAIResponse(token, sessionId, chatId, messageId, userQuestion, actualResponse);
 	        actualResponse = responseData.get("assistantResponse");
 	        
-	        similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-			isValid = similarityScore >= threshold;
+	        CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, questionId.getLang());
+	        similarityScore = score.getValue();
+	        isValid = score.isPass();
+	        decidedBy = score.getTier();
 
 	        Log.assertThat(isValid, 
 	        		"Response is clear and helpful response to common public service queries",
@@ -59,7 +63,7 @@ public class ResponseValidationTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
 		}
     }
 
@@ -70,6 +74,7 @@ public class ResponseValidationTests extends BaseTest {
     	
     	String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
@@ -87,8 +92,10 @@ public class ResponseValidationTests extends BaseTest {
 	        Map<String, String> responseData = APIUtils.getAIResponse(token, sessionId, chatId, messageId, userQuestion, actualResponse);
 	        actualResponse = responseData.get("assistantResponse");
 	        
-	        similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-			isValid = similarityScore >= threshold;
+	        CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, questionId.getLang());
+	        similarityScore = score.getValue();
+	        isValid = score.isPass();
+	        decidedBy = score.getTier();
 
 	        Log.assertThat(isValid, 
 	        		"Responses are not hallucinated ",
@@ -97,7 +104,7 @@ public class ResponseValidationTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
 		}
     }
 
@@ -109,7 +116,9 @@ public class ResponseValidationTests extends BaseTest {
     	String userQuestion = "", expectedResponse = "", actualResponse = "";
 		String userQuestionInArabic = "", expectedResponseInArabic = "", actualResponseInArabic = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		Double thresholdInArabic, similarityScoreInArabic = 0.0 ;
+		String decidedByInArabic = "";
 		boolean isValid = false;
 		boolean isValidInArabic = false;
 		
@@ -128,8 +137,10 @@ public class ResponseValidationTests extends BaseTest {
 	        Map<String, String> responseData = APIUtils.getAIResponse(token, sessionId, chatId, messageId, userQuestion, actualResponse);
 	        actualResponse = responseData.get("assistantResponse");
 	        
-	        similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-			isValid = similarityScore >= threshold;
+	        CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, questionId_English.getLang());
+	        similarityScore = score.getValue();
+	        isValid = score.isPass();
+	        decidedBy = score.getTier();
 
 	        Log.assertThat(isValid, 
 	        		"User can see AI-generated responses are displayed correctly in English.",
@@ -148,8 +159,10 @@ public class ResponseValidationTests extends BaseTest {
 	        Map<String, String> responseData_Arabic = APIUtils.getAIResponse(token, sessionId, chatId, messageId, userQuestionInArabic, actualResponseInArabic);
 	        actualResponseInArabic = responseData_Arabic.get("assistantResponse");
 	        
-	        similarityScoreInArabic = TextUtils.getSemanticSimilarity(expectedResponseInArabic, actualResponseInArabic);
-	        isValidInArabic = similarityScoreInArabic >= thresholdInArabic;
+	        CascadeScorer.Score scoreInArabic = CascadeScorer.score(expectedResponseInArabic, actualResponseInArabic, thresholdInArabic, questionId_Arabic.getLang());
+	        similarityScoreInArabic = scoreInArabic.getValue();
+	        isValidInArabic = scoreInArabic.isPass();
+	        decidedByInArabic = scoreInArabic.getTier();
 
 	        Log.assertThat(isValidInArabic, 
 	        		"User can see AI-generated responses are displayed correctly in Arabic.",
@@ -158,8 +171,8 @@ public class ResponseValidationTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
-			ChatReportUtils.logResultHtml(userQuestionInArabic, expectedResponseInArabic, actualResponseInArabic, similarityScoreInArabic, isValidInArabic);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
+			ChatReportUtils.logResultHtml(userQuestionInArabic, expectedResponseInArabic, actualResponseInArabic, similarityScoreInArabic, isValidInArabic, decidedByInArabic);
 		}
     }
 
@@ -204,6 +217,7 @@ public class ResponseValidationTests extends BaseTest {
     	
     	String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
@@ -221,8 +235,10 @@ public class ResponseValidationTests extends BaseTest {
 	        Map<String, String> responseData = APIUtils.getAIResponse(token, sessionId, chatId, messageId, userQuestion, actualResponse);
 	        actualResponse = responseData.get("assistantResponse");
 	        
-	        similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-			isValid = similarityScore >= threshold;
+	        CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, questionId.getLang());
+	        similarityScore = score.getValue();
+	        isValid = score.isPass();
+	        decidedBy = score.getTier();
 
 	        Log.assertThat(isValid, 
 	        		"Fallback message is displayed properly as expected",
@@ -231,7 +247,47 @@ public class ResponseValidationTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
+		}
+    }
+
+    @Test(priority = 5)
+    public void tc06VerifyMultiTurnConversation() {
+    	
+    	Log.message("tc06VerifyMultiTurnConversation: Verify that follow-up questions in the same chat get relevant answers");
+    	
+    	boolean allValid = true;
+    	ConversationSession session = new ConversationSession(token, sessionId);
+		
+		try {
+			
+			Conversation conversation = JsonUtils.getConversationById(filePath, "CONV_EN_01");
+			for (TestData turn : conversation.getTurns()) {
+				String actualResponse = "";
+				Double similarityScore = 0.0;
+				String decidedBy = "";
+				boolean isValid = false;
+				
+				try {
+					actualResponse = session.ask(turn.getInput(), turn.getActual()).getAnswer();
+					
+					CascadeScorer.Score score = CascadeScorer.score(turn.getExpected(), actualResponse, turn.getThreshold(), turn.getLang());
+					similarityScore = score.getValue();
+					isValid = score.isPass();
+					decidedBy = score.getTier();
+				} finally {
+					ChatReportUtils.logResultHtml(turn.getInput(), turn.getExpected(), actualResponse, similarityScore, isValid, decidedBy);
+				}
+				allValid &= isValid;
+			}
+			
+			Log.message(session.getGrowthSummary());
+	        Log.assertThat(allValid, 
+	        		"Every turn of the conversation got a relevant answer",
+	        		"Some turns of the conversation did not get a relevant answer!");
+	        
+		} catch (Exception e) {
+			Log.fail("Error while validating multi-turn conversation: " + e.getMessage());
 		}
     }
 }
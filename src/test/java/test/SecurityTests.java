@@ -4,12 +4,12 @@ import base.BaseTest;
 import org.testng.annotations.Test;
 import pages.ChatPage;
 import pages.LoginPage;
+import utils.CascadeScorer;
 import utils.ChatReportUtils;
 import utils.ConfigReader;
 import utils.JsonUtils;
 import utils.Log;
 import utils.TestData;
-import utils.TextUtils;
 
 public class SecurityTests extends BaseTest {
 	
@@ -23,14 +23,15 @@ public class SecurityTests extends BaseTest {
 
 		String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 
 			TestData question = JsonUtils.getSecurityTestById(filePath, "SEC_01");
 
@@ -42,9 +43,11 @@ public class SecurityTests extends BaseTest {
 				chatPage.enterChatInput(userQuestion);
 				chatPage.clickOnButtonSend();
 
-				actualResponse = chatPage.getLastAIMessage(driver);
-				similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-				isValid = similarityScore >= threshold;
+				actualResponse = chatPage.getLastAIMessage(getDriver());
+				CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, question.getLang());
+				similarityScore = score.getValue();
+				isValid = score.isPass();
+				decidedBy = score.getTier();
 				Log.assertThat(isValid,
 						"Chat input is sanitized; malicious scripts are not executed.",
 			            "Chat input is not sanitized; malicious scripts may be executed.");
@@ -52,7 +55,7 @@ public class SecurityTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, null, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
 		}
 	}
 
@@ -62,14 +65,15 @@ public class SecurityTests extends BaseTest {
 
 		String userQuestion = "", expectedResponse = "", actualResponse = "";
 		Double threshold, similarityScore = 0.0 ;
+		String decidedBy = "";
 		boolean isValid = false;
 		
 		try {
-			LoginPage loginPage = new LoginPage(driver);
+			LoginPage loginPage = new LoginPage(getDriver());
 			loginPage.clickOnLoginWithEmailLink();
 			loginPage.loginToUAskWebApp(userName, password);
 
-			ChatPage chatPage = new ChatPage(driver);
+			ChatPage chatPage = new ChatPage(getDriver());
 			TestData question = JsonUtils.getSecurityTestById(filePath, "SEC_02");
 
 			userQuestion = question.getInput();
@@ -80,9 +84,11 @@ public class SecurityTests extends BaseTest {
 				chatPage.enterChatInput(userQuestion);
 				chatPage.clickOnButtonSend();
 
-				actualResponse = chatPage.getLastAIMessage(driver);
-				similarityScore = TextUtils.getSemanticSimilarity(expectedResponse, actualResponse);
-				isValid = similarityScore >= threshold;
+				actualResponse = chatPage.getLastAIMessage(getDriver());
+				CascadeScorer.Score score = CascadeScorer.score(expectedResponse, actualResponse, threshold, question.getLang());
+				similarityScore = score.getValue();
+				isValid = score.isPass();
+				decidedBy = score.getTier();
 				
 				Log.assertThat(isValid,
 						"Chat input is sanitized; malicious scripts are not executed.",
@@ -91,7 +97,7 @@ public class SecurityTests extends BaseTest {
 		} catch (Exception e) {
 			Log.fail("Error while validating semantic similarity: " + e.getMessage());
 		} finally {
-			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, null, isValid);
+			ChatReportUtils.logResultHtml(userQuestion, expectedResponse, actualResponse, similarityScore, isValid, decidedBy);
 		}
 	}
 }
@@ -1,7 +1,9 @@
 package utils;
 
 import io.restassured.RestAssured;
+import io.restassured.config.HttpClientConfig;
 import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
 import io.restassured.response.Response;
 
 import java.time.Instant;
@@ -9,13 +11,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 public class APIUtils {
 
 	private static String baseUrl = "https://govgpt.sandbox.dge.gov.ae";
 	private static String loginEndPoint = "/api/v1/auths/signin";
-	private static String newChatEndPoint = "/api/v1/chats/new";
+	public static String newChatEndPoint = "/api/v1/chats/new";
+	public static String chatEndPoint = "/api/v1/chats/";
 	public static String aiResponseEndPoint = "/api/chat/completed";
+	public static final String MODEL = ConfigReader.get("chatModel", "gpt-4.1");
 
 	/**
 	 * To get access token
@@ -25,9 +30,8 @@ public class APIUtils {
 	 * @return - String as token
 	 */
 	public static String getAccessToken(String username, String password) {
-		Response loginResponse = RestAssured.given().contentType(ContentType.JSON)
-				.body("{\"email\":\"" + username + "\", \"password\":\"" + password + "\"}")
-				.post(baseUrl + loginEndPoint).then().statusCode(200).extract().response();
+		Response loginResponse = login(username, password);
+		loginResponse.then().statusCode(200);
 
 		return loginResponse.jsonPath().getString("token");
 	}
@@ -40,13 +44,25 @@ public class APIUtils {
 	 * @return - String as session id
 	 */
 	public static String getSessionId(String username, String password) {
-		Response loginResponse = RestAssured.given().contentType(ContentType.JSON)
-				.body("{\"email\":\"" + username + "\", \"password\":\"" + password + "\"}")
-				.post(baseUrl + loginEndPoint).then().statusCode(200).extract().response();
+		Response loginResponse = login(username, password);
+		loginResponse.then().statusCode(200);
 
 		return loginResponse.jsonPath().getString("session_id");
 	}
 
+	/**
+	 * To sign in, retried on throttling / server errors
+	 *
+	 * @param username
+	 * @param password
+	 * @return - response
+	 */
+	private static Response login(String username, String password) {
+		return execute(loginEndPoint, () -> given().contentType(ContentType.JSON)
+				.body("{\"email\":\"" + username + "\", \"password\":\"" + password + "\"}")
+				.post(baseUrl + loginEndPoint).then().extract().response());
+	}
+
 	/**
 	 * To perform 'POST' request
 	 * 
@@ -56,7 +72,7 @@ public class APIUtils {
 	 * @return - response
 	 */
 	public static Response postRequest(String endpoint, String token, String payload) {
-		return RestAssured.given()
+		return execute(endpoint, () -> given()
                 .baseUri(baseUrl)
                 .header("Authorization", "Bearer " + token)
                 .contentType(ContentType.JSON)
@@ -64,7 +80,7 @@ public class APIUtils {
                 .when()
                 .post(endpoint)
                 .then()
-                .extract().response();
+                .extract().response());
 	}
 
 	/**
@@ -75,14 +91,74 @@ public class APIUtils {
 	 * @return - response
 	 */
 	public static Response getRequest(String endpoint, String token) {
-		return RestAssured.given()
+		return execute(endpoint, () -> given()
 				.baseUri(baseUrl)
 				.header("Authorization", "Bearer " + token)
 				.contentType(ContentType.JSON)
 				.when()
 				.get(endpoint)
 				.then()
-				.extract().response();
+				.extract().response());
+	}
+
+	/**
+	 * To start a request whose connect and socket timeouts are capped by the remaining time budget of the test
+	 *
+	 * @return - request specification
+	 */
+	private static RequestSpecification given() {
+		long remaining = TimeBudget.remainingMillis();
+		if (remaining == Long.MAX_VALUE) {
+			return RestAssured.given();
+		}
+		int timeout = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+		return RestAssured.given().config(RestAssured.config().httpClient(HttpClientConfig.httpClientConfig()
+				.setParam("http.connection.timeout", timeout)
+				.setParam("http.socket.timeout", timeout)));
+	}
+
+	/**
+	 * To run a request through ApiResilience (retries with backoff, Retry-After, circuit breaker, concurrency limit)
+	 *
+	 * @param endpoint
+	 * @param request
+	 * @return - response of the last attempt
+	 */
+	private static Response execute(String endpoint, Supplier<Response> request) {
+		long start = System.nanoTime();
+		String status = "error";
+		try {
+			// one circuit breaker per templated endpoint, not one per chat id
+			Response response = ApiResilience.execute(metricEndpoint(endpoint), request, Response::getStatusCode, r -> r.getHeader("Retry-After"));
+			status = String.valueOf(response.getStatusCode());
+			if (response.getStatusCode() == 429 || response.getStatusCode() >= 500) {
+				TransientRetryAnalyzer.markTransient("HTTP " + status + " from " + endpoint);
+			}
+			return response;
+		} catch (TimeBudget.BudgetExceededException e) {
+			status = "budget_exceeded";
+			throw e;
+		} catch (RuntimeException e) {
+			// transport failures (I/O, open circuit breaker), the status assertions come later
+			TransientRetryAnalyzer.markTransient(e.getClass().getSimpleName() + " on " + endpoint);
+			throw e;
+		} finally {
+			// one sample per logical request, retries included
+			Metrics.observe("uask_api_request_seconds", "API request latency including retries", (System.nanoTime() - start) / 1e9,
+					"endpoint", metricEndpoint(endpoint));
+			Metrics.increment("uask_api_requests", "API requests by endpoint and final status", "endpoint", metricEndpoint(endpoint),
+					"status", status);
+		}
+	}
+
+	/**
+	 * To strip ids from an endpoint, so chats do not each get their own metric series
+	 *
+	 * @param endpoint
+	 * @return - endpoint path
+	 */
+	private static String metricEndpoint(String endpoint) {
+		return endpoint.startsWith(chatEndPoint) && !endpoint.equals(newChatEndPoint) ? chatEndPoint + "{id}" : endpoint;
 	}
 
 	/**
@@ -108,7 +184,7 @@ public class APIUtils {
                 "  \"chat\": {\n" +
                 "    \"id\": \"\",\n" +
                 "    \"title\": \"New Chat\",\n" +
-                "    \"models\": [\"gpt-4.1\"],\n" +
+                "    \"models\": [\"" + MODEL + "\"],\n" +
                 "    \"params\": {},\n" +
                 "    \"history\": {\n" +
                 "      \"messages\": {\n" +
@@ -119,7 +195,7 @@ public class APIUtils {
                 "          \"role\": \"user\",\n" +
                 "          \"content\": \"" + userMessage + "\",\n" +
                 "          \"timestamp\": " + timestamp + ",\n" +
-                "          \"models\": [\"gpt-4.1\"],\n" +
+                "          \"models\": [\"" + MODEL + "\"],\n" +
                 "          \"features\": {\n" +
                 "            \"web_search\": false,\n" +
                 "            \"deep_search\": false,\n" +
@@ -138,7 +214,7 @@ public class APIUtils {
                 "        \"role\": \"user\",\n" +
                 "        \"content\": \"" + userMessage + "\",\n" +
                 "        \"timestamp\": " + timestamp + ",\n" +
-                "        \"models\": [\"gpt-4.1\"],\n" +
+                "        \"models\": [\"" + MODEL + "\"],\n" +
                 "        \"features\": {\n" +
                 "          \"web_search\": false,\n" +
                 "          \"deep_search\": false,\n" +
@@ -174,11 +250,28 @@ public class APIUtils {
      * @return
      */
     public static Map<String, String> getAIResponse(String token, String sessionId, String chatId, String userMessageId, String userMessage, String assitantMessage) {
+        String payload = completionPayload(sessionId, chatId, userMessageId, userMessage, assitantMessage);
+        // identical requests of the run share one completion when responseSharing is on
+        String key = ResponseSharing.key(payload, "id", "timestamp", "chat_id", "session_id");
+        return new HashMap<>(ResponseSharing.share(key, () -> requestAIResponse(token, payload, userMessage)));
+    }
+
+    /**
+     * To build the completion request body
+     * 
+     * @param sessionId
+     * @param chatId
+     * @param userMessageId
+     * @param userMessage
+     * @param assitantMessage
+     * @return - JSON payload
+     */
+    private static String completionPayload(String sessionId, String chatId, String userMessageId, String userMessage, String assitantMessage) {
     	String assistantMessageId = generateUUID();
     	long timestamp = Instant.now().getEpochSecond();
         
         String payload = "{\n" +
-                "  \"model\": \"gpt-4.1\",\n" +
+                "  \"model\": \"" + MODEL + "\",\n" +
                 "  \"messages\": [\n" +
                 "    {\n" +
                 "      \"id\": \"" + userMessageId + "\",\n" +
@@ -198,9 +291,30 @@ public class APIUtils {
                 "  \"session_id\": \"" + sessionId + "\",\n" +
                 "  \"id\": \"" +  assistantMessageId + "\"\n" +
                 "}";
-        
-        Response response = postRequest(aiResponseEndPoint, token, payload);
+        return payload;
+    }
+
+    /**
+     * To request the ai assistant response from the backend
+     * 
+     * @param token
+     * @param payload
+     * 		- completion request body
+     * @param userMessage
+     * 		- question, for token accounting
+     * @return
+     */
+    private static Map<String, String> requestAIResponse(String token, String payload, String userMessage) {
+        long start = System.nanoTime();
+        Response response;
+        TimeBudget.Phase phase = TimeBudget.phase("api");
+        try {
+            response = postRequest(aiResponseEndPoint, token, payload);
+        } finally {
+            phase.close();
+        }
         response.then().statusCode(200);
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
 
         Map<String, String> result = new HashMap<>();
         List<Map<String, Object>> messages = response.jsonPath().getList("messages");
@@ -213,6 +327,8 @@ public class APIUtils {
             }
         }
         result.put("assistantResponse", assistantResponse);
+        result.put("latencyMillis", String.valueOf(latencyMillis));
+        TokenAccounting.record(null, MODEL, userMessage, assistantResponse, latencyMillis);
         return result;
     }
 }
@@ -0,0 +1,274 @@
+package utils;
+
+import io.restassured.response.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * One chat which keeps growing: the first turn creates the chat, every further turn is appended to the
+ * same chatId as a child of the previous answer (history.messages / parentId / childrenIds), so the model
+ * sees the whole conversation and the chat-creation round trip is paid only once.
+ * <p>
+ * Every turn records its depth, latency, request size and answer size, see {@link #getGrowthSummary()}.
+ * </p>
+ */
+public class ConversationSession {
+
+	private final String token;
+	private final String sessionId;
+	private final JsonObject history = new JsonObject();
+	private final JsonArray messages = new JsonArray();
+	private final List<Turn> turns = new ArrayList<>();
+	private String chatId;
+	private String currentId;
+
+	/**
+	 * Metrics of one question / answer pair
+	 */
+	public static class Turn {
+		private final int depth;
+		private final String question;
+		private final String answer;
+		private final long latencyMillis;
+		private final int requestBytes;
+
+		Turn(int depth, String question, String answer, long latencyMillis, int requestBytes) {
+			this.depth = depth;
+			this.question = question;
+			this.answer = answer;
+			this.latencyMillis = latencyMillis;
+			this.requestBytes = requestBytes;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		public String getQuestion() {
+			return question;
+		}
+
+		public String getAnswer() {
+			return answer;
+		}
+
+		public long getLatencyMillis() {
+			return latencyMillis;
+		}
+
+		public int getRequestBytes() {
+			return requestBytes;
+		}
+
+		public int getAnswerChars() {
+			return answer.length();
+		}
+	}
+
+	/**
+	 * To start a conversation, the chat itself is created by the first question
+	 *
+	 * @param token
+	 * 		- access token
+	 * @param sessionId
+	 * 		- session id of the login
+	 */
+	public ConversationSession(String token, String sessionId) {
+		this.token = token;
+		this.sessionId = sessionId;
+		history.add("messages", new JsonObject());
+	}
+
+	/**
+	 * To ask the next question of the conversation
+	 *
+	 * @param userMessage
+	 * 		- question
+	 * @param assistantMessage
+	 * 		- placeholder content of the assistant message (the stored answer of the test data, may be null)
+	 * @return Turn with the answer and its metrics
+	 */
+	public synchronized Turn ask(String userMessage, String assistantMessage) {
+		long start = System.nanoTime();
+		long timestamp = Instant.now().getEpochSecond();
+
+		String userMessageId = APIUtils.generateUUID();
+		JsonObject userNode = message(userMessageId, currentId, "user", userMessage, timestamp);
+		JsonArray models = new JsonArray();
+		models.add(APIUtils.MODEL);
+		userNode.add("models", models);
+		userNode.add("features", features());
+		append(userNode);
+
+		if (chatId == null) {
+			Response created = APIUtils.postRequest(APIUtils.newChatEndPoint, token, chatPayload().toString());
+			created.then().statusCode(200);
+			chatId = JsonParser.parseString(created.asString()).getAsJsonObject().get("id").getAsString();
+		} else {
+			APIUtils.postRequest(APIUtils.chatEndPoint + chatId, token, chatPayload().toString()).then().statusCode(200);
+		}
+
+		String assistantMessageId = APIUtils.generateUUID();
+		JsonArray completedMessages = new JsonArray();
+		StringBuilder context = new StringBuilder();
+		for (JsonElement element : messages) {
+			JsonObject node = element.getAsJsonObject();
+			JsonObject item = new JsonObject();
+			item.addProperty("id", node.get("id").getAsString());
+			item.addProperty("role", node.get("role").getAsString());
+			item.addProperty("content", node.get("content").getAsString());
+			item.addProperty("timestamp", node.get("timestamp").getAsLong());
+			completedMessages.add(item);
+			context.append(node.get("content").getAsString()).append('\n');
+		}
+		JsonObject assistantItem = new JsonObject();
+		assistantItem.addProperty("id", assistantMessageId);
+		assistantItem.addProperty("role", "assistant");
+		assistantItem.addProperty("content", assistantMessage != null ? assistantMessage : "");
+		assistantItem.addProperty("timestamp", timestamp);
+		assistantItem.add("sources", new JsonArray());
+		completedMessages.add(assistantItem);
+
+		JsonObject completed = new JsonObject();
+		completed.addProperty("model", APIUtils.MODEL);
+		completed.add("messages", completedMessages);
+		completed.addProperty("chat_id", chatId);
+		completed.addProperty("session_id", sessionId);
+		completed.addProperty("id", assistantMessageId);
+		String payload = completed.toString();
+
+		long requestStart = System.nanoTime();
+		Response response = APIUtils.postRequest(APIUtils.aiResponseEndPoint, token, payload);
+		response.then().statusCode(200);
+		String answer = extractAnswer(response.asString(), assistantMessageId);
+		// the whole history is model input, so input tokens grow with depth
+		TokenAccounting.record(null, APIUtils.MODEL, context.toString(), answer, (System.nanoTime() - requestStart) / 1_000_000);
+
+		append(message(assistantMessageId, userMessageId, "assistant", answer, Instant.now().getEpochSecond()));
+
+		Turn turn = new Turn(turns.size() + 1, userMessage, answer, (System.nanoTime() - start) / 1_000_000,
+				payload.getBytes(StandardCharsets.UTF_8).length);
+		turns.add(turn);
+		Log.event(String.format("Conversation %s turn %d: %d ms, request %d bytes, answer %d chars",
+				chatId, turn.getDepth(), turn.getLatencyMillis(), turn.getRequestBytes(), turn.getAnswerChars()));
+		return turn;
+	}
+
+	/**
+	 * To get the chat id (null before the first question)
+	 *
+	 * @return String
+	 */
+	public String getChatId() {
+		return chatId;
+	}
+
+	/**
+	 * To get the turns asked so far
+	 *
+	 * @return List of Turn, in order
+	 */
+	public synchronized List<Turn> getTurns() {
+		return Collections.unmodifiableList(new ArrayList<>(turns));
+	}
+
+	/**
+	 * To get latency, request size and answer size per depth with the growth against the first turn
+	 *
+	 * @return String, one line per turn
+	 */
+	public synchronized String getGrowthSummary() {
+		StringBuilder sb = new StringBuilder("Conversation " + chatId + " (" + turns.size() + " turns)");
+		if (turns.isEmpty()) return sb.toString();
+		Turn first = turns.get(0);
+		for (Turn turn : turns) {
+			sb.append(String.format("%n  depth %2d: %6d ms (x%.2f)  request %7d bytes (x%.2f)  answer %6d chars",
+					turn.getDepth(), turn.getLatencyMillis(), ratio(turn.getLatencyMillis(), first.getLatencyMillis()),
+					turn.getRequestBytes(), ratio(turn.getRequestBytes(), first.getRequestBytes()), turn.getAnswerChars()));
+		}
+		return sb.toString();
+	}
+
+	private static double ratio(long value, long base) {
+		return base > 0 ? (double) value / base : 0;
+	}
+
+	/**
+	 * Adds a message to the tree (as child of its parent) and to the linear list, and makes it the current one
+	 */
+	private void append(JsonObject node) {
+		JsonObject tree = history.getAsJsonObject("messages");
+		if (currentId != null) {
+			tree.getAsJsonObject(currentId).getAsJsonArray("childrenIds").add(node.get("id").getAsString());
+		}
+		tree.add(node.get("id").getAsString(), node);
+		messages.add(node);
+		currentId = node.get("id").getAsString();
+		history.addProperty("currentId", currentId);
+	}
+
+	private JsonObject chatPayload() {
+		JsonArray models = new JsonArray();
+		models.add(APIUtils.MODEL);
+
+		JsonObject chat = new JsonObject();
+		chat.addProperty("id", chatId != null ? chatId : "");
+		chat.addProperty("title", "New Chat");
+		chat.add("models", models);
+		chat.add("params", new JsonObject());
+		chat.add("history", history);
+		chat.add("messages", messages);
+		chat.add("tags", new JsonArray());
+		chat.addProperty("timestamp", Instant.now().toEpochMilli());
+		chat.add("agent_id", null);
+
+		JsonObject payload = new JsonObject();
+		payload.add("chat", chat);
+		return payload;
+	}
+
+	private static JsonObject message(String id, String parentId, String role, String content, long timestamp) {
+		JsonObject node = new JsonObject();
+		node.addProperty("id", id);
+		node.addProperty("parentId", parentId);
+		node.add("childrenIds", new JsonArray());
+		node.addProperty("role", role);
+		node.addProperty("content", content);
+		node.addProperty("timestamp", timestamp);
+		return node;
+	}
+
+	private static JsonObject features() {
+		JsonObject features = new JsonObject();
+		features.addProperty("web_search", false);
+		features.addProperty("deep_search", false);
+		features.addProperty("rag", false);
+		features.addProperty("unifyAgent", false);
+		return features;
+	}
+
+	/**
+	 * Content of the assistant message with the requested id, else the last assistant message
+	 */
+	static String extractAnswer(String body, String assistantMessageId) {
+		JsonObject root = JsonParser.parseString(body).getAsJsonObject();
+		String answer = "";
+		if (!root.has("messages")) return answer;
+		for (JsonElement element : root.getAsJsonArray("messages")) {
+			JsonObject message = element.getAsJsonObject();
+			if (!"assistant".equals(message.get("role").getAsString()) || message.get("content").isJsonNull()) continue;
+			answer = message.get("content").getAsString();
+			if (message.has("id") && assistantMessageId.equals(message.get("id").getAsString())) break;
+		}
+		return answer;
+	}
+}